@@ -0,0 +1,29 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of this module with the GC profiler
+ * (gc.alloc.rate.norm is the number of bytes allocated per call)
+ *
+ * Arguments are passed to JMH, e.g. "SearchBenchmark -p depth=6" only runs the search at depth 6.
+ * With no arguments every benchmark is run.
+ * The benchmarks are generated by JMH's annotation processor, so annotation processing
+ * has to be enabled for this module (it is, in the project's compiler settings).
+ */
+public class BenchmarkRunner {
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    Options options = new OptionsBuilder()
+        .parent(new CommandLineOptions(args))
+        .addProfiler(GCProfiler.class)
+        .build();
+
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,55 @@
+package bench;
+
+import game.Board;
+import game.BitBoard;
+import game.misc.Position;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+  @Param({"2021"})
+  long seed;
+
+  private List<BitBoard> boards;
+  private Position[] squares;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    boards = new PositionCorpus(seed, 64).createBoards();
+
+    squares = new Position[64];
+    for (int square = 0; square < 64; square++) {
+      squares[square] = Position.ofSquare(square);
+    }
+  }
+
+  private BitBoard nextBoard() {
+    index = (index + 1) % boards.size();
+    return boards.get(index);
+  }
+
+  @Benchmark
+  public Board copy() {
+    return nextBoard().copy();
+  }
+
+  // Every square of the board, empty or not
+  @Benchmark
+  public void findPieceAtPosition(Blackhole blackhole) {
+    Board board = nextBoard();
+
+    for (Position square : squares) {
+      blackhole.consume(board.findPieceAtPosition(square));
+    }
+  }
+}
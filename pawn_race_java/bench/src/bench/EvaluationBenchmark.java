@@ -0,0 +1,44 @@
+package bench;
+
+import game.AI.AIMinimax;
+import game.AI.SearchLimits;
+import game.BitBoard;
+import game.misc.Colour;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+  @Param({"2021"})
+  long seed;
+
+  private List<BitBoard> boards;
+  private Colour[] coloursToMove;
+  private AIMinimax ai;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    boards = new PositionCorpus(seed, 64).createBoards();
+    coloursToMove = new Colour[boards.size()];
+    for (int i = 0; i < boards.size(); i++) {
+      coloursToMove[i] = boards.get(i).getColourToMove();
+    }
+
+    // Evaluation does not need a game
+    ai = new AIMinimax(null, Colour.WHITE, SearchLimits.ofDepth(1), 1, seed);
+  }
+
+  @Benchmark
+  public int evaluatePosition() {
+    index = (index + 1) % boards.size();
+    return ai.evaluatePosition(boards.get(index), coloursToMove[index]);
+  }
+}
@@ -0,0 +1,54 @@
+package bench;
+
+import game.BitBoard;
+import game.Player;
+import game.misc.Move;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveGenerationBenchmark {
+  @Param({"2021"})
+  long seed;
+
+  private List<BitBoard> boards;
+  private Player[] players;
+  // First valid move of each position
+  private Move[] moves;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    boards = new PositionCorpus(seed, 64).createBoards();
+    players = new Player[boards.size()];
+    moves = new Move[boards.size()];
+
+    for (int i = 0; i < boards.size(); i++) {
+      BitBoard board = boards.get(i);
+      players[i] = new Player(board.getColourToMove(), board);
+      moves[i] = players[i].getValidMoves().get(0);
+    }
+  }
+
+  @Benchmark
+  public List<Move> getValidMoves() {
+    index = (index + 1) % boards.size();
+    return players[index].getValidMoves();
+  }
+
+  // Player.makeMove checks the move is valid first, the move is taken back so the position stays the same
+  @Benchmark
+  public boolean makeMove() {
+    index = (index + 1) % boards.size();
+    boolean valid = players[index].makeMove(moves[index]);
+    boards.get(index).unmakeMove();
+    return valid;
+  }
+}
@@ -0,0 +1,100 @@
+package bench;
+
+import game.AI.MoveOrderer;
+import game.BitBoard;
+import game.Game;
+import game.Player;
+import game.misc.Colour;
+import game.misc.Move;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Positions to benchmark on
+ *
+ * Each position is reached by playing random moves from the start position,
+ * with a fixed seed, so every run benchmarks the same positions.
+ * Moves that would end the game (win or draw) are not played, so every position has moves to search.
+ */
+public class PositionCorpus {
+  public static final long DEFAULT_SEED = 2021;
+  private static final int MIN_NO_MOVES = 4;
+  private static final int MAX_NO_MOVES = 24;
+
+  // Encoded moves (see MoveOrderer.encodeMove) leading to each position
+  private final List<List<Integer>> moveSequences = new ArrayList<>();
+
+  public PositionCorpus(long seed, int noPositions) {
+    Random random = new Random(seed);
+
+    for (int i = 0; i < noPositions; i++) {
+      BitBoard board = new BitBoard();
+      List<Integer> moveSequence = new ArrayList<>();
+      int noMoves = MIN_NO_MOVES + random.nextInt(MAX_NO_MOVES - MIN_NO_MOVES + 1);
+
+      for (int j = 0; j < noMoves; j++) {
+        List<Move> moves = new Player(board.getColourToMove(), board).getValidMoves();
+        Move move = moves.get(random.nextInt(moves.size()));
+        // (encoded before it is made, since that moves the piece)
+        int encodedMove = MoveOrderer.encodeMove(move);
+        board.makeMove(move);
+        if (board.checkWin(Colour.WHITE) || board.checkWin(Colour.BLACK)
+            || board.checkDraw(new Player(board.getColourToMove(), board))) {
+          board.unmakeMove();
+          break;
+        }
+
+        moveSequence.add(encodedMove);
+      }
+
+      moveSequences.add(moveSequence);
+    }
+  }
+
+  public PositionCorpus(int noPositions) {
+    this(DEFAULT_SEED, noPositions);
+  }
+
+  public int size() {
+    return moveSequences.size();
+  }
+
+  public BitBoard createBoard(int index) {
+    BitBoard board = new BitBoard();
+
+    for (int encodedMove : moveSequences.get(index)) {
+      board.makeMove(findMove(new Player(board.getColourToMove(), board).getValidMoves(), encodedMove));
+    }
+
+    return board;
+  }
+
+  public List<BitBoard> createBoards() {
+    List<BitBoard> boards = new ArrayList<>();
+    for (int i = 0; i < size(); i++) {
+      boards.add(createBoard(i));
+    }
+    return boards;
+  }
+
+  // Same position as createBoard, but as a game (e.g. for AI.chooseMove)
+  public Game createGame(int index) {
+    Game game = new Game();
+
+    for (int encodedMove : moveSequences.get(index)) {
+      game.makeMove(findMove(game.getPlayerTurn().getValidMoves(), encodedMove));
+    }
+
+    return game;
+  }
+
+  private static Move findMove(List<Move> moves, int encodedMove) {
+    return moves
+        .stream()
+        .filter(move -> MoveOrderer.encodeMove(move) == encodedMove)
+        .findFirst()
+        .orElseThrow();
+  }
+}
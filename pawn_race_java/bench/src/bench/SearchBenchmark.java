@@ -0,0 +1,49 @@
+package bench;
+
+import game.AI.AIMinimax;
+import game.AI.SearchLimits;
+import game.Game;
+import game.misc.Move;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed depth search, one position of the corpus per run (see @position)
+ *
+ * The transposition table is cleared before each call, so every call searches the whole tree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+  @Param({"2021"})
+  long seed;
+
+  @Param({"0", "1", "2", "3"})
+  int position;
+
+  @Param({"4", "6", "8"})
+  int depth;
+
+  private AIMinimax ai;
+
+  @Setup
+  public void setUp() {
+    Game game = new PositionCorpus(seed, 4).createGame(position);
+    ai = new AIMinimax(game, game.getPlayerTurn().getColour(), SearchLimits.ofDepth(depth), 16, seed);
+  }
+
+  @Setup(Level.Invocation)
+  public void clearTranspositionTable() {
+    ai.getTranspositionTable().clear();
+  }
+
+  @Benchmark
+  public Move chooseMove() {
+    return ai.chooseMove();
+  }
+}
@@ -61,6 +61,7 @@ public class BoardController {
   }
   // -------------------- End of aliases --------------------
 
+  // null if not on the board
   private Position getPosition(double x, double y) {
     // Rounded to integers
     int xr = (int) x;
@@ -69,7 +70,7 @@ public class BoardController {
     int row = getBoard().getNoRows() - yr / getCellHeight() - 1;
     int column = xr / getCellWidth();
 
-    return new Position(row, column);
+    return Position.isOnBoard(row, column) ? Position.of(row, column) : null;
   }
 
   private boolean selectPiece(Position position) {
@@ -238,6 +239,9 @@ public class BoardController {
   }
 
   public void draw() {
+    DrawEvent event = new DrawEvent();
+    event.begin();
+
     drawBase();
     drawPieces();
 
@@ -248,6 +252,13 @@ public class BoardController {
     if (game.getStatus() != Status.PLAYING) {
       drawGameResult();
     }
+
+    if (event.shouldCommit()) {
+      event.positionHash = getBoard().getZobristKey();
+      event.noMovesMade = getBoard().getNoMovesMade();
+      event.noPieces = getBoard().getPieces().size();
+      event.commit();
+    }
   }
 
   public void enableEvents() {
@@ -258,6 +269,9 @@ public class BoardController {
     canvas.setOnMouseClicked(event -> {
       if (game.getStatus() == Status.PLAYING) {
         Position cursorPos = getPosition(event.getSceneX(), event.getSceneY());
+        if (cursorPos == null) {
+          return;
+        }
 
         if (status == BoardStatus.TO_SELECT_PIECE) {
           selectPiece(cursorPos);
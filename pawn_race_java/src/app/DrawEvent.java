@@ -0,0 +1,21 @@
+package app;
+
+import jdk.jfr.*;
+
+// JFR event for BoardController.draw
+@Name("pawnrace.Draw")
+@Label("Draw Board")
+@Category({"Pawn Race", "GUI"})
+@Description("A redraw of the board")
+@StackTrace(false)
+class DrawEvent extends Event {
+  @Label("Position Hash")
+  @Description("Zobrist key of the position drawn")
+  long positionHash;
+
+  @Label("Moves Made")
+  int noMovesMade;
+
+  @Label("Pieces")
+  int noPieces;
+}
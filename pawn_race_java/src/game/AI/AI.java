@@ -3,7 +3,11 @@ package game.AI;
 import game.misc.Colour;
 import game.misc.Move;
 
-public interface AI {
+public interface AI extends AutoCloseable {
   Colour getColour();
   Move chooseMove();
+
+  // Stops any threads the AI started (call it when the AI is replaced or thrown away)
+  @Override
+  default void close() {}
 }
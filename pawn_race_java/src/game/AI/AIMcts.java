@@ -0,0 +1,625 @@
+package game.AI;
+
+import game.BitBoard;
+import game.Game;
+import game.Perft;
+import game.misc.Colour;
+import game.misc.Move;
+import game.misc.MoveList;
+import game.misc.PackedMove;
+import game.misc.Position;
+import game.misc.Status;
+import lib.ArenaTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monte Carlo tree search
+ *
+ * Grows a tree from the current position. Each playout walks down the tree picking children by UCT
+ * (win rate plus a bonus for children with few playouts), adds the children of the node it ends on,
+ * plays the game out from there with the RolloutPolicy, and adds the result to every node on the way.
+ * The move played is the root move with the most playouts.
+ * Positions are only scored by how games from them end (or by RaceResolver, which is exact),
+ * so unlike AIMinimax this doesn't use a hand-written evaluation.
+ *
+ * The tree is kept from one move to the next: the node of the position after the opponent's reply
+ * becomes the new root, with the playouts already made under it.
+ * It is an ArenaTree, so playouts don't allocate nodes, and re-rooting packs the kept subtree
+ * so the rest of the arena is reused.
+ *
+ * Parallel playouts
+ * With more than 1 thread, every thread runs playouts on the same tree. Walking down and
+ * updating the tree is done holding a lock, playing out is not.
+ * A node counts as a lost playout while a playout through it is running (virtual loss),
+ * so other threads try different nodes rather than all playing out the same one.
+ *
+ * Budget: the time limit of @searchLimits, or its node limit as the number of playouts.
+ */
+public class AIMcts implements AI {
+  private final Game game;
+  private final Colour colour;
+  private static final long DEFAULT_TIME_LIMIT_MILLIS = 1000;
+  // Exploration constant of UCT, sqrt(2) in theory
+  private static final double DEFAULT_EXPLORATION = Math.sqrt(2);
+  // Rewards are for white, in half points (so they add up as ints)
+  private static final int WHITE_WINS = 2;
+  private static final int DRAW = 1;
+  private static final int BLACK_WINS = 0;
+  private static final int NO_RESULT = -1;
+
+  private SearchLimits searchLimits;
+  private RolloutPolicy rolloutPolicy = RolloutPolicy.GREEDY;
+  private double exploration = DEFAULT_EXPLORATION;
+  // Print the stats of every search
+  private boolean logging = false;
+  private final long seed;
+
+  private final ArenaTree tree = new ArenaTree();
+  // Held to walk down or update the tree
+  private final Object treeLock = new Object();
+  private long searchStartTime;
+  private final AtomicLong noPlayoutsStarted = new AtomicLong();
+
+  private int numThreads = 1;
+  private final List<Playouter> playouters = new ArrayList<>();
+  private ExecutorService helperThreads;
+
+  // Stats of the last search
+  private long noPlayouts;
+  private long elapsedNanos;
+  private int noReusedNodes;
+  private double winRate;
+
+  // @seed is used for the rollouts (with 1 thread and a playout limit, the same seed gives the same moves)
+  public AIMcts(Game game, Colour colour, SearchLimits searchLimits, long seed) {
+    this.game = game;
+    this.colour = colour;
+    this.searchLimits = searchLimits;
+    this.seed = seed;
+    this.playouters.add(new Playouter(0));
+  }
+
+  public AIMcts(Game game, Colour colour) {
+    this(game, colour, SearchLimits.ofTime(DEFAULT_TIME_LIMIT_MILLIS), System.nanoTime());
+  }
+
+  /**
+   * Columns of a node in the tree
+   * move: move from the parent to this node (packed, see PackedMove)
+   * key: Zobrist key of the position
+   * count: number of playouts through the node
+   * score: total reward of those playouts for the side that made the move
+   * flags: bits 0-1 are the reward for white + 1 if the result is known without playing out
+   *   (game over or resolved race), 0 otherwise; the bits above count virtual losses
+   */
+  private static final int RESULT_MASK = 3;
+  private static final int VIRTUAL_LOSS_SHIFT = 2;
+
+  private int getNodeResult(int node) {
+    return (tree.getFlags(node) & RESULT_MASK) - 1;
+  }
+
+  private void setNodeResult(int node, int result) {
+    tree.setFlags(node, (tree.getFlags(node) & ~RESULT_MASK) | (result + 1));
+  }
+
+  private int getNoVirtualLosses(int node) {
+    return tree.getFlags(node) >>> VIRTUAL_LOSS_SHIFT;
+  }
+
+  private void addVirtualLosses(int node, int noVirtualLosses) {
+    tree.setFlags(node, tree.getFlags(node) + (noVirtualLosses << VIRTUAL_LOSS_SHIFT));
+  }
+
+  @Override
+  public Colour getColour() {
+    return colour;
+  }
+
+  public SearchLimits getSearchLimits() {
+    return searchLimits;
+  }
+
+  public void setSearchLimits(SearchLimits searchLimits) {
+    this.searchLimits = searchLimits;
+  }
+
+  public RolloutPolicy getRolloutPolicy() {
+    return rolloutPolicy;
+  }
+
+  public void setRolloutPolicy(RolloutPolicy rolloutPolicy) {
+    this.rolloutPolicy = rolloutPolicy;
+  }
+
+  public double getExploration() {
+    return exploration;
+  }
+
+  public void setExploration(double exploration) {
+    this.exploration = exploration;
+  }
+
+  public boolean isLogging() {
+    return logging;
+  }
+
+  public void setLogging(boolean logging) {
+    this.logging = logging;
+  }
+
+  public int getNumThreads() {
+    return numThreads;
+  }
+
+  // Total number of threads running playouts (including the one calling chooseMove)
+  public void setNumThreads(int numThreads) {
+    assert numThreads >= 1;
+    this.numThreads = numThreads;
+
+    if (helperThreads != null) {
+      helperThreads.shutdownNow();
+      helperThreads = null;
+    }
+    while (playouters.size() > numThreads) {
+      playouters.remove(playouters.size() - 1);
+    }
+    while (playouters.size() < numThreads) {
+      playouters.add(new Playouter(playouters.size()));
+    }
+
+    if (numThreads > 1) {
+      helperThreads = Executors.newFixedThreadPool(numThreads - 1, runnable -> {
+        Thread thread = new Thread(runnable, "AIMcts helper");
+        // Don't keep the app alive
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  // Stops the helper threads (the AI can still be used, with 1 thread)
+  @Override
+  public void close() {
+    setNumThreads(1);
+  }
+
+  // -------------------- Stats of the last search --------------------
+  public long getNoPlayouts() {
+    return noPlayouts;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  public long getPlayoutsPerSecond() {
+    return noPlayouts * 1_000_000_000L / Math.max(1, elapsedNanos);
+  }
+
+  // Nodes kept from the last search
+  public int getNoReusedNodes() {
+    return noReusedNodes;
+  }
+
+  public int getTreeSize() {
+    return tree.getSize();
+  }
+
+  // Average reward of the move played, for this AI (1 is a sure win)
+  public double getWinRate() {
+    return winRate;
+  }
+  // -------------------- End of stats --------------------
+
+  // Reward for white if the game is over or the race is resolved, NO_RESULT otherwise
+  private static int getResult(BitBoard board) {
+    if (board.checkWin(Colour.WHITE)) {
+      return WHITE_WINS;
+    } else if (board.checkWin(Colour.BLACK)) {
+      return BLACK_WINS;
+    }
+
+    int raceResult = RaceResolver.resolve(board);
+    if (raceResult == RaceResolver.UNRESOLVED) {
+      return NO_RESULT;
+    } else if (raceResult == 0) {
+      return DRAW;
+    }
+
+    boolean whiteWins = (raceResult > 0) == (board.getColourToMove() == Colour.WHITE);
+    return whiteWins ? WHITE_WINS : BLACK_WINS;
+  }
+
+  private static int getReward(int result, Colour colour) {
+    return (colour == Colour.WHITE) ? result : WHITE_WINS - result;
+  }
+
+  // One per thread, each with its own board and random numbers
+  private class Playouter {
+    private final Random random;
+    private BitBoard board;
+    private final MoveList moves = new MoveList();
+    // Nodes from the root to the node played out from
+    private int[] path = new int[MoveOrderer.MAX_PLY];
+    private int pathLength;
+
+    Playouter(int id) {
+      this.random = new Random(seed + id);
+    }
+
+    // UCT, counting virtual losses as playouts with no reward
+    private int selectChild(int node) {
+      double logNoVisits = Math.log(Math.max(1, tree.getCount(node) + getNoVirtualLosses(node)));
+      int bestChild = ArenaTree.NONE;
+      double bestValue = Double.NEGATIVE_INFINITY;
+
+      for (int child = tree.getFirstChild(node); child != ArenaTree.NONE; child = tree.getNextSibling(child)) {
+        int noVisits = tree.getCount(child) + getNoVirtualLosses(child);
+        if (noVisits == 0) {
+          // Every move is tried once first
+          return child;
+        }
+
+        double winRate = tree.getScore(child) / (2.0 * noVisits);
+        double value = winRate + exploration * Math.sqrt(logNoVisits / noVisits);
+        if (value > bestValue) {
+          bestValue = value;
+          bestChild = child;
+        }
+      }
+
+      return bestChild;
+    }
+
+    // Adds a child per valid move (in random order, so ties between unvisited moves are broken randomly)
+    private void expand(int node) {
+      board.generateMoves(moves);
+      moves.shuffle(random);
+
+      for (int i = 0; i < moves.size(); i++) {
+        int move = moves.get(i);
+        board.makeMove(move);
+        int child = tree.addChild(node);
+        tree.setMove(child, move);
+        tree.setKey(child, board.getZobristKey());
+        setNodeResult(child, getResult(board));
+        board.unmakeMove();
+      }
+    }
+
+    private int rollout() {
+      int noMovesMade = 0;
+      int result;
+
+      while (true) {
+        result = getResult(board);
+        if (result != NO_RESULT) {
+          break;
+        }
+
+        board.generateMoves(moves);
+        if (moves.isEmpty()) {
+          result = DRAW;
+          break;
+        }
+
+        board.makeMove(rolloutPolicy.chooseMove(board, moves, random));
+        noMovesMade++;
+      }
+
+      for (int i = 0; i < noMovesMade; i++) {
+        board.unmakeMove();
+      }
+      return result;
+    }
+
+    private void addToPath(int node) {
+      if (pathLength == path.length) {
+        path = Arrays.copyOf(path, 2 * path.length);
+      }
+      path[pathLength++] = node;
+    }
+
+    private void playout() {
+      pathLength = 0;
+      int result;
+
+      synchronized (treeLock) {
+        int node = tree.getRootIndex();
+        addVirtualLosses(node, 1);
+        addToPath(node);
+
+        while (true) {
+          if (tree.isLeaf(node) && getNodeResult(node) == NO_RESULT
+              && (tree.getCount(node) > 0 || pathLength == 1)) {
+            // Grow the tree by a level here (leaves are only expanded once they have been played out from)
+            expand(node);
+          }
+          if (tree.isLeaf(node)) {
+            break;
+          }
+
+          node = selectChild(node);
+          board.makeMove(tree.getMove(node));
+          addVirtualLosses(node, 1);
+          addToPath(node);
+        }
+
+        result = getNodeResult(node);
+      }
+
+      if (result == NO_RESULT) {
+        result = rollout();
+      }
+
+      for (int i = 1; i < pathLength; i++) {
+        board.unmakeMove();
+      }
+
+      synchronized (treeLock) {
+        // The root's side to move (this AI) made the moves to odd depths
+        for (int i = 0; i < pathLength; i++) {
+          int node = path[i];
+          Colour mover = (i % 2 == 1) ? colour : (colour == Colour.WHITE ? Colour.BLACK : Colour.WHITE);
+          addVirtualLosses(node, -1);
+          tree.addCount(node, 1);
+          tree.addScore(node, getReward(result, mover));
+        }
+      }
+    }
+
+    private void runPlayouts() {
+      while (!isBudgetUsed()) {
+        playout();
+      }
+    }
+  }
+
+  private boolean isBudgetUsed() {
+    if (noPlayoutsStarted.getAndIncrement() >= searchLimits.getNodeLimit()) {
+      return true;
+    }
+    long elapsedMillis = (System.nanoTime() - searchStartTime) / 1_000_000;
+    return elapsedMillis >= searchLimits.getTimeLimitMillis();
+  }
+
+  // Node of the current position among the root and the 2 levels below it (this AI's move, then the reply)
+  private int findReusableRoot(long key) {
+    int root = tree.getRootIndex();
+    if (root == ArenaTree.NONE) {
+      return ArenaTree.NONE;
+    }
+    if (tree.getKey(root) == key) {
+      return root;
+    }
+
+    for (int child = tree.getFirstChild(root); child != ArenaTree.NONE; child = tree.getNextSibling(child)) {
+      for (int grandchild = tree.getFirstChild(child); grandchild != ArenaTree.NONE;
+           grandchild = tree.getNextSibling(grandchild)) {
+        if (tree.getKey(grandchild) == key) {
+          return grandchild;
+        }
+      }
+    }
+    return ArenaTree.NONE;
+  }
+
+  @Override
+  public Move chooseMove() {
+    assert(colour == game.getPlayerTurn().getColour());
+    ChooseMoveEvent event = new ChooseMoveEvent();
+    event.begin();
+
+    List<Move> validMoves = game.getPlayerTurn().getValidMoves();
+    BitBoard rootBoard = new BitBoard(game.getBoard());
+    long key = rootBoard.getZobristKey();
+
+    int reusableRoot = findReusableRoot(key);
+    if (reusableRoot != ArenaTree.NONE) {
+      tree.retainSubtree(reusableRoot);
+      noReusedNodes = tree.getSize();
+    } else {
+      tree.setRoot();
+      tree.setMove(tree.getRootIndex(), TranspositionTable.NO_MOVE);
+      tree.setKey(tree.getRootIndex(), key);
+      noReusedNodes = 0;
+    }
+    int root = tree.getRootIndex();
+    // Always search the root, even if the result is known
+    setNodeResult(root, NO_RESULT);
+
+    searchStartTime = System.nanoTime();
+    long rootVisitsBefore = tree.getCount(root);
+    noPlayoutsStarted.set(0);
+
+    // A move that wins straight away is played without searching
+    Move winningMove = null;
+    for (Move move : validMoves) {
+      rootBoard.makeMove(move);
+      if (rootBoard.checkWin(colour)) {
+        winningMove = move;
+      }
+      rootBoard.unmakeMove();
+    }
+
+    if (validMoves.size() > 1 && winningMove == null) {
+      for (Playouter playouter : playouters) {
+        playouter.board = new BitBoard(rootBoard);
+      }
+
+      List<Future<?>> helperResults = new ArrayList<>();
+      for (int i = 1; i < numThreads; i++) {
+        helperResults.add(helperThreads.submit(playouters.get(i)::runPlayouts));
+      }
+      playouters.get(0).runPlayouts();
+
+      for (Future<?> helperResult : helperResults) {
+        try {
+          helperResult.get();
+        } catch (InterruptedException | ExecutionException e) {
+          throw new IllegalStateException("Playout thread failed", e);
+        }
+      }
+    }
+
+    elapsedNanos = System.nanoTime() - searchStartTime;
+    noPlayouts = tree.getCount(root) - rootVisitsBefore;
+
+    // Most played root move (the most reliable, since its win rate has the most playouts behind it)
+    int bestChild = ArenaTree.NONE;
+    for (int child = tree.getFirstChild(root); child != ArenaTree.NONE; child = tree.getNextSibling(child)) {
+      if (bestChild == ArenaTree.NONE || tree.getCount(child) > tree.getCount(bestChild)) {
+        bestChild = child;
+      }
+    }
+
+    Move chosenMove = (winningMove != null) ? winningMove : validMoves.get(0);
+    winRate = (winningMove != null) ? 1 : 0;
+    if (bestChild != ArenaTree.NONE && winningMove == null) {
+      for (Move move : validMoves) {
+        if (PackedMove.pack(move) == tree.getMove(bestChild)) {
+          chosenMove = move;
+        }
+      }
+      winRate = tree.getScore(bestChild) / (2.0 * Math.max(1, tree.getCount(bestChild)));
+    }
+
+    if (logging) {
+      System.out.printf("%d playouts, %.1fms, %d playouts/s (%d threads), tree size %d (%d reused), "
+              + "win rate %.2f, best move %s%n",
+          noPlayouts, elapsedNanos / 1e6, getPlayoutsPerSecond(), numThreads, tree.getSize(), noReusedNodes,
+          winRate, chosenMove);
+    }
+
+    if (event.shouldCommit()) {
+      event.ai = getClass().getSimpleName();
+      event.colour = colour.toString();
+      event.positionHash = key;
+      event.nodes = noPlayouts;
+      event.threads = numThreads;
+      event.move = chosenMove.toString();
+      event.commit();
+    }
+
+    return chosenMove;
+  }
+
+  // Testing
+  public static void main(String[] args) {
+    // White has to take c3, or black's c-pawn gets through first
+    Game captureGame = new Game(Perft.parsePosition("8/p7/8/7P/8/2p5/1P6/8 w -"));
+    AIMcts captureAi = new AIMcts(captureGame, Colour.WHITE, SearchLimits.ofNodes(2000), 0);
+    Move captureMove = captureAi.chooseMove();
+    if (!captureMove.getPosTo().equals(Position.of(2, 2))) {
+      throw new IllegalStateException("Expected bxc3, got " + captureMove);
+    }
+    System.out.println("Found " + captureMove + " (win rate " + captureAi.getWinRate() + ")");
+
+    // Parallel playouts: every playout should be counted once, and every virtual loss taken back
+    Game parallelGame = new Game();
+    AIMcts parallelAi = new AIMcts(parallelGame, Colour.WHITE, SearchLimits.ofTime(300), 0);
+    parallelAi.setNumThreads(4);
+    parallelAi.chooseMove();
+    ArenaTree parallelTree = parallelAi.tree;
+    int root = parallelTree.getRootIndex();
+    int childVisits = 0;
+    for (int child = parallelTree.getFirstChild(root); child != ArenaTree.NONE;
+         child = parallelTree.getNextSibling(child)) {
+      childVisits += parallelTree.getCount(child);
+    }
+    if (parallelTree.getCount(root) != parallelAi.getNoPlayouts() || childVisits != parallelTree.getCount(root)
+        || parallelAi.getNoVirtualLosses(root) != 0) {
+      throw new IllegalStateException("Playouts don't add up: root " + parallelTree.getCount(root) + ", children "
+          + childVisits + ", playouts " + parallelAi.getNoPlayouts());
+    }
+    System.out.println("4 threads: " + parallelAi.getNoPlayouts() + " playouts, "
+        + parallelAi.getPlayoutsPerSecond() + " playouts/s, tree size " + parallelAi.getTreeSize());
+
+    // Test: closing stops the helpers
+    ExecutorService parallelHelpers = parallelAi.helperThreads;
+    parallelAi.close();
+    if (!parallelHelpers.isShutdown() || parallelAi.helperThreads != null || parallelAi.getNumThreads() != 1) {
+      throw new IllegalStateException("Helper threads still running after close");
+    }
+
+    // Against AIRandomMover, keeping the tree between moves
+    int noWins = 0;
+    long noReusedNodes = 0;
+    for (int i = 0; i < 10; i++) {
+      Game game = new Game();
+      Colour mctsColour = (i % 2 == 0) ? Colour.WHITE : Colour.BLACK;
+      Colour randomColour = (mctsColour == Colour.WHITE) ? Colour.BLACK : Colour.WHITE;
+      AIMcts mctsAi = new AIMcts(game, mctsColour, SearchLimits.ofNodes(300), i);
+      AIRandomMover randomAi = new AIRandomMover(game, randomColour);
+
+      while (game.getStatus() == Status.PLAYING) {
+        if (game.getPlayerTurn().getColour() == mctsColour) {
+          game.makeMove(mctsAi.chooseMove());
+          noReusedNodes += mctsAi.getNoReusedNodes();
+        } else {
+          game.makeMove(randomAi.chooseMove());
+        }
+      }
+
+      if (game.getStatus() == (mctsColour == Colour.WHITE ? Status.WHITE_WINS : Status.BLACK_WINS)) {
+        noWins++;
+      }
+    }
+    if (noReusedNodes == 0) {
+      throw new IllegalStateException("Expected nodes to be kept between moves");
+    }
+    System.out.println("Won " + noWins + " of 10 games against AIRandomMover (" + noReusedNodes
+        + " nodes reused)");
+
+    // Rollout policies against each other, and against AIMinimax (for reference)
+    int noGreedyWins = 0, noMinimaxWins = 0, noMctsWins = 0;
+    for (int i = 0; i < 4; i++) {
+      Game game = new Game();
+      Colour greedyColour = (i % 2 == 0) ? Colour.WHITE : Colour.BLACK;
+      Map<Colour, AI> ais = new EnumMap<>(Colour.class);
+      for (Colour c : Colour.values()) {
+        AIMcts ai = new AIMcts(game, c, SearchLimits.ofNodes(1000), i);
+        ai.setRolloutPolicy(c == greedyColour ? RolloutPolicy.GREEDY : RolloutPolicy.RANDOM);
+        ais.put(c, ai);
+      }
+      while (game.getStatus() == Status.PLAYING) {
+        game.makeMove(ais.get(game.getPlayerTurn().getColour()).chooseMove());
+      }
+      if (game.getStatus() == (greedyColour == Colour.WHITE ? Status.WHITE_WINS : Status.BLACK_WINS)) {
+        noGreedyWins++;
+      }
+
+      game = new Game();
+      Colour mctsColour = greedyColour;
+      ais.clear();
+      for (Colour c : Colour.values()) {
+        ais.put(c, (c == mctsColour)
+            ? new AIMcts(game, c, SearchLimits.ofNodes(2000), i)
+            : new AIMinimax(game, c, SearchLimits.ofNodes(20000), 4, i));
+      }
+      while (game.getStatus() == Status.PLAYING) {
+        game.makeMove(ais.get(game.getPlayerTurn().getColour()).chooseMove());
+      }
+      if (game.getStatus() == (mctsColour == Colour.WHITE ? Status.WHITE_WINS : Status.BLACK_WINS)) {
+        noMctsWins++;
+      } else if (game.getStatus() != Status.DRAW) {
+        noMinimaxWins++;
+      }
+    }
+    System.out.println("Greedy rollouts won " + noGreedyWins + " of 4 games against random rollouts");
+    System.out.println("AIMcts (2000 playouts) won " + noMctsWins + ", AIMinimax (20000 nodes) won "
+        + noMinimaxWins + " of 4 games");
+  }
+}
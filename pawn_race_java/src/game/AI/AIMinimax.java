@@ -1,32 +1,236 @@
 package game.AI;
 
+import game.BitBoard;
 import game.Board;
 import game.Game;
+import game.PawnMasks;
+import game.Perft;
 import game.Player;
 import game.misc.Colour;
 import game.misc.Move;
+import game.misc.MoveType;
 import game.misc.Position;
+import game.misc.Status;
 import game.pieces.Piece;
-import lib.NodeTree;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AIMinimax implements AI {
   private final Game game;
   private final Colour colour;
-  // Best to keep @Max_DEPTH even if AI is white
-  // Best to keep @MAX_DEPTH odd if AI is Black
-  // (it only affects the evaluation function due to the space factor, but performance is not affected)
-  private final int MAX_DEPTH = 5;
+  // Default budget per move
+  // (it used to be a fixed depth of 5, iterative deepening now stops when the time runs out)
+  private static final long DEFAULT_TIME_LIMIT_MILLIS = 1000;
+  // Check the clock every so many nodes
+  private static final int NODES_BETWEEN_LIMIT_CHECKS = 1024;
   // Made evaluation an integer instead of a double
   // So we introduce @EVALUATION_FACTOR - will refactor
   private final int EVALUATION_FACTOR = 100;
-  private int visitedNodesCount;
+  private static final int DEFAULT_TT_SIZE_IN_MB = 16;
+  /**
+   * Win scores
+   *
+   * A win for white @ply moves from the root scores WIN_SCORE - @ply (and a win for black the
+   * negation), so faster wins (and slower losses) are preferred.
+   * A race the static evaluation says is won (but the game is not over yet) scores
+   * RACE_WIN_SCORE - @ply instead, below every real win.
+   * Anything beyond +/- WIN_THRESHOLD is a win. Every other score is far below, and
+   * Integer.MIN_VALUE / MAX_VALUE are left as the bounds of the search window.
+   */
+  public static final int WIN_SCORE = 1_000_000;
+  public static final int RACE_WIN_SCORE = WIN_SCORE - 2 * MoveOrderer.MAX_PLY;
+  private static final int WIN_THRESHOLD = RACE_WIN_SCORE - MoveOrderer.MAX_PLY;
+  // Not a score (see getExactScore)
+  private static final int NO_EXACT_SCORE = Integer.MIN_VALUE;
+  // Pawns this many rows (or fewer) from their last row are pushed in quiescence search
+  private static final int QUIESCENCE_PUSH_DISTANCE = 2;
+  private SearchLimits searchLimits;
+  private long searchStartTime;
+  // Set by the main search thread when it is done, so the helper threads stop too
+  private volatile boolean stopSearch;
+  // Stats of the current (or last) search, a new object for every search
+  private SearchStats searchStats = new SearchStats(1, ParallelMode.LAZY_SMP);
+  private final List<SearchListener> searchListeners = new CopyOnWriteArrayList<>();
+  // Print the stats of every search
+  private boolean logging = false;
+  // Extend the leaves of the search with captures and pushes close to the last row (see quiescence)
+  private boolean quiescenceSearch = true;
+  // Kept from one move to the next, since the same pawn structures come up again
+  // (shared by all search threads)
+  private final TranspositionTable transpositionTable;
+  private final long seed;
+  // Exact results of endings with few pawns, probed at the root and in the tree (null for none)
+  private Tablebase tablebase;
 
-  public AIMinimax(Game game, Colour colour) {
+  /**
+   * Lazy SMP
+   *
+   * With more than 1 thread, helper threads search the same root at the same time,
+   * only sharing the transposition table. They start at different depths and order moves
+   * with different seeds, so they fill the table with results the main thread can use.
+   * The move played is always the main thread's.
+   */
+  private int numThreads = 1;
+  private ParallelMode parallelMode = ParallelMode.LAZY_SMP;
+  private Searcher mainSearcher;
+  private final List<Searcher> helperSearchers = new ArrayList<>();
+  private ExecutorService helperThreads;
+  private BitBoard[] boardCopies;
+
+  /**
+   * Root split
+   *
+   * The first root move is searched on its own, then the rest are searched in parallel
+   * (one fork-join task each), with the best score so far as the window.
+   * Scores don't depend on the order moves are searched in (see minimax), so the move
+   * returned is always the first root move with the best score, same as the sequential search.
+   * Only reproducible with a depth limit, time and node limits still depend on the speed.
+   */
+  private ForkJoinPool rootSplitPool;
+  // 1 per worker of @rootSplitPool, so killers and history carry over between tasks.
+  // Keyed by pool index, not by thread: workers that time out when idle are replaced by new
+  // threads, which reuse the free indices (and so the searchers) instead of adding searchers
+  private final Map<Integer, Searcher> rootSplitSearchers = new ConcurrentHashMap<>();
+  private final AtomicInteger nextRootSplitSearcherId = new AtomicInteger(1);
+  // Nodes of the main thread and the workers together, added to every NODES_BETWEEN_LIMIT_CHECKS
+  // nodes, so the node limit is for the whole search rather than for each thread
+  private final AtomicLong rootSplitNodeCount = new AtomicLong();
+  // Root moves are ordered without history or the transposition table, which
+  // depend on how earlier searches went
+  private final MoveOrderer rootMoveOrderer;
+
+  // @seed is used to break ties between equally good moves
+  public AIMinimax(Game game, Colour colour, SearchLimits searchLimits, int ttSizeInMB, long seed) {
     this.game = game;
     this.colour = colour;
-    this.visitedNodesCount = 0;
+    this.searchLimits = searchLimits;
+    this.transpositionTable = new TranspositionTable(ttSizeInMB);
+    this.seed = seed;
+    this.mainSearcher = new Searcher(0);
+    this.rootMoveOrderer = new MoveOrderer(seed);
+  }
+
+  public AIMinimax(Game game, Colour colour, SearchLimits searchLimits) {
+    this(game, colour, searchLimits, DEFAULT_TT_SIZE_IN_MB, System.nanoTime());
+  }
+
+  public AIMinimax(Game game, Colour colour) {
+    this(game, colour, SearchLimits.ofTime(DEFAULT_TIME_LIMIT_MILLIS));
+  }
+
+  public SearchLimits getSearchLimits() {
+    return searchLimits;
+  }
+
+  public void setSearchLimits(SearchLimits searchLimits) {
+    this.searchLimits = searchLimits;
+  }
+
+  public boolean isLogging() {
+    return logging;
+  }
+
+  public void setLogging(boolean logging) {
+    this.logging = logging;
+  }
+
+  public boolean isQuiescenceSearch() {
+    return quiescenceSearch;
+  }
+
+  public void setQuiescenceSearch(boolean quiescenceSearch) {
+    this.quiescenceSearch = quiescenceSearch;
+  }
+
+  public Tablebase getTablebase() {
+    return tablebase;
+  }
+
+  public void setTablebase(Tablebase tablebase) {
+    this.tablebase = tablebase;
+  }
+
+  public void addSearchListener(SearchListener listener) {
+    searchListeners.add(listener);
+  }
+
+  public void removeSearchListener(SearchListener listener) {
+    searchListeners.remove(listener);
+  }
+
+  // Stats of the last search, or the current one while it runs (see SearchListener)
+  public SearchStats getSearchStats() {
+    return searchStats;
+  }
+
+  public int getNumThreads() {
+    return numThreads;
+  }
+
+  public ParallelMode getParallelMode() {
+    return parallelMode;
+  }
+
+  // Total number of search threads (including the main one)
+  public void setNumThreads(int numThreads) {
+    setNumThreads(numThreads, parallelMode);
+  }
+
+  public void setNumThreads(int numThreads, ParallelMode parallelMode) {
+    assert numThreads >= 1;
+    this.numThreads = numThreads;
+    this.parallelMode = parallelMode;
+
+    if (helperThreads != null) {
+      helperThreads.shutdownNow();
+      helperThreads = null;
+    }
+    helperSearchers.clear();
+    if (rootSplitPool != null) {
+      rootSplitPool.shutdownNow();
+      rootSplitPool = null;
+    }
+    rootSplitSearchers.clear();
+    nextRootSplitSearcherId.set(1);
+
+    if (numThreads > 1 && parallelMode == ParallelMode.ROOT_SPLIT) {
+      // Worker threads are daemons already
+      rootSplitPool = new ForkJoinPool(numThreads);
+    } else if (numThreads > 1) {
+      for (int i = 1; i < numThreads; i++) {
+        helperSearchers.add(new Searcher(i));
+      }
+      helperThreads = Executors.newFixedThreadPool(numThreads - 1, runnable -> {
+        Thread thread = new Thread(runnable, "AIMinimax helper");
+        // Don't keep the app alive
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  // Stops the search threads (the AI can still be used, with 1 thread)
+  @Override
+  public void close() {
+    setNumThreads(1, parallelMode);
+  }
+
+  // Only called from tasks running on @rootSplitPool
+  private Searcher getRootSplitSearcher() {
+    int poolIndex = ((ForkJoinWorkerThread) Thread.currentThread()).getPoolIndex();
+    return rootSplitSearchers.computeIfAbsent(poolIndex,
+        index -> new Searcher(nextRootSplitSearcherId.getAndIncrement()));
   }
 
   @Override
@@ -42,325 +246,1173 @@ public class AIMinimax implements AI {
     return (c == Colour.WHITE) ? Colour.BLACK : Colour.WHITE;
   }
 
-  // The notion of space will help us evaluate a static position
-  private int getSpaceOfPiece(Piece piece) {
-    int space = piece.getPosition().getRow();
-
-    if (piece.getColour() == Colour.BLACK) {
-      space = game.getBoard().getNoRows() - space - 1;
-    }
+  // The notion of space will help us evaluate a static position (see Board.getSpaceOfPiece)
+  // Sum of the space of each piece of colour @c (-1 if there are none)
+  // The board keeps the sum up to date as moves are made, so this is just a lookup
+  private int getSpace(Board board, Colour c) {
+    return (board.getNoPieces(c) == 0) ? -1 : board.getSpace(c);
+  }
 
-    return space;
+  // A pawn is passed if no opposite coloured pawns are ahead of it (on the same or adjacent files)
+  private long getPassedPawns(BitBoard board, Colour targetColour) {
+    return PawnMasks.getPassedPawns(targetColour,
+        board.getPawns(targetColour), board.getPawns(getOppositeColour(targetColour)));
   }
 
-  private int getSpace(Board board, Colour c) {
-    return board.getPieces(c)
-        .stream()
-        .map(this::getSpaceOfPiece)
-        .reduce(Integer::sum)
-        .orElse(-1);
-  }
-
-  private List<Piece> getPassedPawns(Board board, Colour targetColour) {
-    Colour oppositeColour = getOppositeColour(targetColour);
-
-    return board.getPieces(targetColour)
-        .stream()
-        .filter(
-            piece -> {
-              // Check piece is passed
-              // Means no opposite coloured pawns are ahead of it
-              int noOpponentObstructions = board.getPieces(oppositeColour)
-                  .stream()
-                  .filter(opponentPiece -> {
-                    Position piecePos = piece.getPosition();
-                    Position opponentPiecePos = opponentPiece.getPosition();
-
-                    // Opponent pawn isn't in adjacent column
-                    if (Math.abs(piecePos.getColumn() - opponentPiecePos.getColumn()) > 1) {
-                      return false;
-                    }
-
-                    if (targetColour == Colour.WHITE) {
-                      return opponentPiecePos.getRow() > piecePos.getRow();
-                    } else {
-                      return opponentPiecePos.getRow() < piecePos.getRow();
-                    }
-                  })
-                  .toList()
-                  .size();
-
-              return noOpponentObstructions == 0;
-            }
-        )
-        .toList();
+  // Returns the square of the most pushed passed pawn, or -1 if there is none
+  private int getMostPushedPassedPawn(BitBoard board, Colour targetColour) {
+    return PawnMasks.getMostAdvanced(targetColour, getPassedPawns(board, targetColour));
   }
 
-  private Optional<Piece> getMostPushedPassedPawn(Board board, Colour targetColour) {
-    if (targetColour == Colour.WHITE) {
-      return getPassedPawns(board, targetColour)
-          .stream()
-          .max(Comparator.comparing(piece -> piece.getPosition().getRow()));
-    } else {
-      return getPassedPawns(board, targetColour)
-          .stream()
-          .min(Comparator.comparing(piece -> piece.getPosition().getRow()));
-    }
+  private int getSpaceOfSquare(Board board, Colour c, int square) {
+    int row = square / board.getNoCols();
+    return (c == Colour.WHITE) ? row : board.getNoRows() - row - 1;
   }
 
   // Give a static evaluation of the board (without looking ahead)
   // Assuming the position is not over
-  private int evaluatePosition(Board board, Colour colourToMove) {
+  // Races the RaceResolver can work out are exact wins (see WIN_SCORE), others are +/- RACE_WIN_SCORE
+  // (public so it can be benchmarked on its own)
+  public int evaluatePosition(BitBoard board, Colour colourToMove) {
+    int raceResult = RaceResolver.resolve(board);
+    if (raceResult != RaceResolver.UNRESOLVED) {
+      return toExactScore(raceResult, colourToMove, 0);
+    }
+
     // Factor 1: passed pawns (deterministic)
-    Optional<Piece> whitePassedPawn = getMostPushedPassedPawn(board, Colour.WHITE);
-    Optional<Piece> blackPassedPawn = getMostPushedPassedPawn(board, Colour.BLACK);
+    int whitePassedPawn = getMostPushedPassedPawn(board, Colour.WHITE);
+    int blackPassedPawn = getMostPushedPassedPawn(board, Colour.BLACK);
 
-    if (whitePassedPawn.isPresent() && blackPassedPawn.isPresent()) {
-      Piece wp = whitePassedPawn.get();
-      Piece bp = blackPassedPawn.get();
+    if (whitePassedPawn != -1 && blackPassedPawn != -1) {
+      int whiteSpace = getSpaceOfSquare(board, Colour.WHITE, whitePassedPawn);
+      int blackSpace = getSpaceOfSquare(board, Colour.BLACK, blackPassedPawn);
 
-      if (getSpaceOfPiece(wp) > getSpaceOfPiece(bp)) return Integer.MAX_VALUE;
-      if (getSpaceOfPiece(bp) > getSpaceOfPiece(wp)) return Integer.MAX_VALUE;
+      if (whiteSpace > blackSpace) return RACE_WIN_SCORE;
+      if (blackSpace > whiteSpace) return -RACE_WIN_SCORE;
 
       // If both players need same amount of moves to push pawn, player who moves first wins
-      return colourToMove == Colour.WHITE ? Integer.MAX_VALUE : Integer.MIN_VALUE;
-    } else if (whitePassedPawn.isPresent()) {
-      return Integer.MAX_VALUE;
-    } else if (blackPassedPawn.isPresent()) {
-      return Integer.MIN_VALUE;
+      return colourToMove == Colour.WHITE ? RACE_WIN_SCORE : -RACE_WIN_SCORE;
+    } else if (whitePassedPawn != -1) {
+      return RACE_WIN_SCORE;
+    } else if (blackPassedPawn != -1) {
+      return -RACE_WIN_SCORE;
     }
 
+    return evaluateMaterialAndSpace(board);
+  }
+
+  // Only integer reads from the board's evaluation state, no allocation
+  private int evaluateMaterialAndSpace(Board board) {
     int evaluation = 0;
 
     // Factor 2: number of pieces on the board
-    int numWhitePieces = board.getPieces(Colour.WHITE).size();
-    int numBlackPieces = board.getPieces(Colour.BLACK).size();
+    int numWhitePieces = board.getNoPieces(Colour.WHITE);
+    int numBlackPieces = board.getNoPieces(Colour.BLACK);
     evaluation += (numWhitePieces - numBlackPieces) * EVALUATION_FACTOR;
 
     // Factor 3: space of each player
     int whiteSpace = getSpace(board, Colour.WHITE);
     int blackSpace = getSpace(board, Colour.BLACK);
-    evaluation += (whiteSpace - blackSpace) * EVALUATION_FACTOR * 0.2;
+    // (integer version of * 0.2, which gives the same result for every possible difference in space)
+    evaluation += (whiteSpace - blackSpace) * EVALUATION_FACTOR / 5;
 
     return evaluation;
   }
 
-  private NodeData evaluateNode(NodeTree.Node<NodeData> node) {
-    Board board = node.value.currBoard;
-    Colour colourToMove = node.value.colourToMove;
-    Player player = new Player(colourToMove, board);
+  public static boolean isWinScore(int score) {
+    return Math.abs(score) >= WIN_THRESHOLD;
+  }
 
-    if (board.checkWin(Colour.WHITE)) {
-      node.value.weight = Integer.MAX_VALUE;
-    } else if (board.checkWin(Colour.BLACK)) {
-      node.value.weight = Integer.MIN_VALUE;
-    } else if (board.checkDraw(player)) {
-      node.value.weight = 0;
-    } else {
-      // Current position is not over
-      node.value.weight = evaluatePosition(board, colourToMove);
+  // Win @score at a node @ply moves from the root, given as if the game was over at the node
+  private static int adjustWinScore(int score, int ply) {
+    if (score >= WIN_THRESHOLD) {
+      return score - ply;
+    } else if (score <= -WIN_THRESHOLD) {
+      return score + ply;
     }
+    return score;
+  }
 
-    return node.value;
+  // Score of a Tablebase / RaceResolver result (for @colourToMove) at a node @ply moves from the root
+  private static int toExactScore(int result, Colour colourToMove, int ply) {
+    if (result == 0) {
+      return 0;
+    }
+
+    // The game ends @distance plies from here
+    int distance = Math.abs(result);
+    boolean whiteWins = (result > 0) == (colourToMove == Colour.WHITE);
+    return whiteWins ? WIN_SCORE - (ply + distance) : -WIN_SCORE + (ply + distance);
+  }
+
+  // The transposition table keeps wins relative to the position stored, so they are
+  // still right when the position is reached at a different ply (see adjustWinScore)
+  private static int toTranspositionTableScore(int score, int ply) {
+    return adjustWinScore(score, -ply);
+  }
+
+  private static int fromTranspositionTableScore(int score, int ply) {
+    return adjustWinScore(score, ply);
+  }
+
+  private boolean isLimitReached(long nodes) {
+    long elapsedMillis = (System.nanoTime() - searchStartTime) / 1_000_000;
+    return elapsedMillis >= searchLimits.getTimeLimitMillis() || nodes >= searchLimits.getNodeLimit();
   }
 
   /**
-   * Minimax on NODE TREE
+   * State of one search thread
    *
-   * Performs minimax algorithm on node tree
-   * Updates all values of the tree up to @maxDepth, except leaf nodes
+   * Each thread makes and unmakes moves on its own board, instead of copying boards,
+   * and has its own move ordering (killers, history).
    */
-  // Returns chosen move as index (i.e. nth child of root)
-  private int minimax(NodeTree<NodeData> tree, int maxDepth, boolean isMaximiser) {
-    if (tree.isEmpty()) {
-      // Tree shouldn't be empty
-      return -1;
+  private class Searcher {
+    private final int id;
+    private final MoveOrderer moveOrderer;
+    private BitBoard searchBoard;
+    // Counters for SearchStats
+    private long visitedNodesCount;
+    private long noLeafEvaluations;
+    private long noInteriorNodes;
+    private long noBetaCutoffs;
+    private long noQuiescenceNodes;
+    private long noQuiescenceEvaluations;
+    private long noQuiescenceCutoffs;
+    private long noTablebaseHits;
+    private long noResolvedRaces;
+    // Set once a limit is reached, so the search unwinds and the iteration is thrown away
+    private boolean aborted;
+    // The first iteration always completes, so there is always a move to play
+    private boolean canAbort;
+    private int evaluation;
+
+    // @id 0 is the main thread
+    Searcher(int id) {
+      this.id = id;
+      // Different seeds, so helper threads search moves in a different order
+      this.moveOrderer = new MoveOrderer(seed + id);
+    }
+
+    private boolean isMainThread() {
+      return id == 0;
     }
 
-    NodeTree.Node<NodeData> root = tree.getRootNode();
+    private void resetCounters() {
+      visitedNodesCount = 0;
+      noLeafEvaluations = 0;
+      noInteriorNodes = 0;
+      noBetaCutoffs = 0;
+      noQuiescenceNodes = 0;
+      noQuiescenceEvaluations = 0;
+      noQuiescenceCutoffs = 0;
+      noTablebaseHits = 0;
+      noResolvedRaces = 0;
+    }
 
-    // Perform minimax (recursive)
-    visitedNodesCount = 0;
-    minimax(maxDepth, isMaximiser, root, 0, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    // @ply is the number of moves from the root, so wins can be told apart by distance
+    private int evaluateNode(Colour colourToMove, int ply) {
+      BitBoard board = searchBoard;
+      Player player = new Player(colourToMove, board);
+
+      if (board.checkWin(Colour.WHITE)) {
+        return WIN_SCORE - ply;
+      } else if (board.checkWin(Colour.BLACK)) {
+        return -WIN_SCORE + ply;
+      } else if (board.checkDraw(player)) {
+        return 0;
+      } else {
+        // Current position is not over
+        return adjustWinScore(evaluatePosition(board, colourToMove), ply);
+      }
+    }
 
-    // Compare root value to its children's to determine which move to make
-    ArrayList<Integer> optimalMovesIndex = new ArrayList<>();
+    // Exact score from the tablebase or the race resolver, or NO_EXACT_SCORE if neither knows it
+    private int getExactScore(Colour colourToMove, int ply) {
+      int result = (tablebase == null) ? Tablebase.NOT_FOUND : tablebase.probe(searchBoard);
 
-    for (int i = 0; i < root.getChildren().size(); i++) {
-      if (root.getChild(i).value.weight == root.value.weight) {
-        optimalMovesIndex.add(i);
+      if (result != Tablebase.NOT_FOUND) {
+        noTablebaseHits++;
+      } else {
+        result = RaceResolver.resolve(searchBoard);
+        if (result == RaceResolver.UNRESOLVED) {
+          return NO_EXACT_SCORE;
+        }
+        noResolvedRaces++;
       }
+
+      return toExactScore(result, colourToMove, ply);
     }
 
-    // Due to the nature of backpropagation of minimax,
-    // We should always find at least 1 children that has same value as root
-    // We'll pick a random optimal move for fun
-    // return optimalMovesIndex.get(random.nextInt(optimalMovesIndex.size()));
-    /**
-     * Note: We can't get a random move, due to the pruning...
-     */
-    return optimalMovesIndex.get(0);
-  }
+    private boolean isGameOver(Player playerToMove) {
+      return searchBoard.checkWin(Colour.WHITE)
+          || searchBoard.checkWin(Colour.BLACK)
+          || searchBoard.checkDraw(playerToMove);
+    }
 
-  private NodeData minimax(int maxDepth, boolean isMaximiser,
-                           NodeTree.Node<NodeData> currNode, int currDepth, int alpha, int beta) {
-    if (currNode == null) {
-      // Null nodes should not exist in this implementation
-      assert(false);
-      System.out.println("Error: minimax encountered null node");
-      return null;
+    // Lazy SMP helpers only stop when told to
+    // (with root split, every thread checks the node limit against the total, see @rootSplitNodeCount)
+    private boolean checksLimits() {
+      return !helperSearchers.contains(this);
     }
 
-    if (currNode.isLeaf() || currDepth >= maxDepth) {
-      visitedNodesCount++;
-      return evaluateNode(currNode);
+    // Called every NODES_BETWEEN_LIMIT_CHECKS nodes
+    private void checkLimits() {
+      long nodes = (rootSplitPool != null)
+          ? rootSplitNodeCount.addAndGet(NODES_BETWEEN_LIMIT_CHECKS)
+          : visitedNodesCount;
+      if (!canAbort) {
+        return;
+      }
+
+      if (stopSearch) {
+        aborted = true;
+      } else if (checksLimits() && isLimitReached(nodes)) {
+        aborted = true;
+        // Stop every other thread too
+        stopSearch = true;
+      }
     }
 
-    NodeData bestChildData, value;
-    ArrayList<NodeData> childrenValues = new ArrayList<>();
+    /**
+     * Minimax with alpha-beta pruning
+     *
+     * Children are generated as the search reaches them (on @searchBoard), rather than building
+     * the whole tree up front. So pruned branches are never generated,
+     * and only the current path is held in memory.
+     *
+     * Results are stored in (and looked up from) the transposition table,
+     * with the bound type depending on how the result compares to the window.
+     * Only results of the same depth are used for cutoffs: then the score of a position
+     * (or the bound on it) is the same whichever order the tree is searched in, so root split
+     * returns the same move as this sequential search. Deeper results still give the move
+     * to try first (using them for cutoffs saved 0.3% of the nodes).
+     */
+    private int minimax(int maxDepth, Colour colourToMove, int currDepth, int alpha, int beta) {
+      if (currDepth >= maxDepth && quiescenceSearch) {
+        return quiescence(colourToMove, currDepth, alpha, beta);
+      }
+
+      visitedNodesCount++;
+      if (visitedNodesCount % NODES_BETWEEN_LIMIT_CHECKS == 0) {
+        checkLimits();
+      }
+      if (aborted) {
+        return 0;
+      }
+
+      Player player = new Player(colourToMove, searchBoard);
+
+      if (currDepth >= maxDepth || isGameOver(player)) {
+        noLeafEvaluations++;
+        return evaluateNode(colourToMove, currDepth);
+      }
 
-    if (isMaximiser) {
-      for (NodeTree.Node<NodeData> child : currNode.getChildren()) {
-        NodeData nodeData = minimax(maxDepth, false, child, currDepth + 1, alpha, beta);
-        assert(nodeData != null);
-        int eval = nodeData.weight;
-        childrenValues.add(nodeData);
-        alpha = Math.max(alpha, eval);
+      // No need to search any further if the result is known
+      int exactScore = getExactScore(colourToMove, currDepth);
+      if (exactScore != NO_EXACT_SCORE) {
+        return exactScore;
+      }
+
+      // Mate distance pruning: no result here can beat a win (or loss) at the next ply,
+      // so give up if the window is already beyond that (a faster win was found elsewhere)
+      int fastestWin = WIN_SCORE - (currDepth + 1);
+      if (alpha >= fastestWin) {
+        return fastestWin;
+      }
+      if (beta <= -fastestWin) {
+        return -fastestWin;
+      }
+
+      int depth = maxDepth - currDepth;
+      long key = searchBoard.getZobristKey();
+      long entry = transpositionTable.probe(key);
+
+      if (entry != 0 && TranspositionTable.getDepth(entry) == depth) {
+        int score = fromTranspositionTableScore(TranspositionTable.getScore(entry), currDepth);
+
+        switch (TranspositionTable.getBound(entry)) {
+          case TranspositionTable.EXACT -> { return score; }
+          case TranspositionTable.LOWER_BOUND -> alpha = Math.max(alpha, score);
+          case TranspositionTable.UPPER_BOUND -> beta = Math.min(beta, score);
+        }
+
+        if (beta <= alpha) {
+          return score;
+        }
+      }
+
+      int originalAlpha = alpha;
+      int originalBeta = beta;
+
+      int ttMove = (entry == 0) ? TranspositionTable.NO_MOVE : TranspositionTable.getBestMove(entry);
+      List<Move> moves = moveOrderer.orderMoves(player.getValidMoves(), searchBoard, currDepth, ttMove);
+      noInteriorNodes++;
+
+      boolean isMaximiser = colourToMove == Colour.WHITE;
+      int bestEval = isMaximiser ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+      Move bestMove = null;
+
+      for (int i = 0; i < moves.size(); i++) {
+        Move move = moves.get(i);
+        searchBoard.makeMove(move);
+        int eval = minimax(maxDepth, getOppositeColour(colourToMove), currDepth + 1, alpha, beta);
+        searchBoard.unmakeMove();
+
+        if (aborted) {
+          // Result is incomplete, so don't store it
+          return 0;
+        }
+
+        if (isMaximiser ? eval > bestEval : eval < bestEval) {
+          bestEval = eval;
+          bestMove = move;
+        }
+
+        if (isMaximiser) {
+          alpha = Math.max(alpha, eval);
+        } else {
+          beta = Math.min(beta, eval);
+        }
 
         // Pruning magic here
         if (beta <= alpha) {
+          noBetaCutoffs++;
+          moveOrderer.recordCutoff(move, currDepth, depth, i);
           break;
         }
       }
 
-      bestChildData = Collections.max(childrenValues);
-    } else {
-      for (NodeTree.Node<NodeData> child : currNode.getChildren()) {
-        NodeData nodeData = minimax(maxDepth, true, child, currDepth + 1, alpha, beta);
-        assert(nodeData != null);
-        int eval = nodeData.weight;
-        childrenValues.add(nodeData);
-        beta = Math.min(beta, eval);
+      int bound;
+      if (bestEval <= originalAlpha) {
+        bound = TranspositionTable.UPPER_BOUND;
+      } else if (bestEval >= originalBeta) {
+        bound = TranspositionTable.LOWER_BOUND;
+      } else {
+        bound = TranspositionTable.EXACT;
+      }
+
+      transpositionTable.store(key, depth, toTranspositionTableScore(bestEval, currDepth), bound,
+          (bestMove == null) ? TranspositionTable.NO_MOVE : MoveOrderer.encodeMove(bestMove));
+
+      return bestEval;
+    }
+
+    // Captures (including en passant), and pushes of pawns 1 or 2 rows from their last row
+    private boolean isNoisy(Move move) {
+      if (move.getMoveType() != MoveType.PASSIVE) {
+        return true;
+      }
+
+      Piece piece = move.getPiece();
+      int distance = Math.abs(searchBoard.getLastRow(piece.getColour()) - piece.getPosition().getRow());
+      return distance <= QUIESCENCE_PUSH_DISTANCE;
+    }
+
+    /**
+     * Quiescence search
+     *
+     * At the leaves of minimax, keeps searching noisy moves (see isNoisy) until the position
+     * is quiet, so it is never evaluated in the middle of an exchange, or just before a pawn
+     * gets through (the horizon effect).
+     * The side to move can "stand pat", i.e. take the static evaluation instead,
+     * so only noisy moves that improve on it change the result.
+     * Results are not stored in the transposition table.
+     */
+    private int quiescence(Colour colourToMove, int ply, int alpha, int beta) {
+      visitedNodesCount++;
+      noQuiescenceNodes++;
+      if (visitedNodesCount % NODES_BETWEEN_LIMIT_CHECKS == 0) {
+        checkLimits();
+      }
+      if (aborted) {
+        return 0;
+      }
+
+      if (searchBoard.checkWin(Colour.WHITE) || searchBoard.checkWin(Colour.BLACK)) {
+        noQuiescenceEvaluations++;
+        return evaluateNode(colourToMove, ply);
+      }
+
+      int exactScore = getExactScore(colourToMove, ply);
+      if (exactScore != NO_EXACT_SCORE) {
+        return exactScore;
+      }
+
+      List<Move> validMoves = new Player(colourToMove, searchBoard).getValidMoves();
+      if (validMoves.isEmpty()) {
+        // Draw
+        return 0;
+      }
+
+      boolean isMaximiser = colourToMove == Colour.WHITE;
+      noQuiescenceEvaluations++;
+      int standPat = adjustWinScore(evaluatePosition(searchBoard, colourToMove), ply);
+
+      if (isMaximiser) {
+        if (standPat >= beta) {
+          return standPat;
+        }
+        alpha = Math.max(alpha, standPat);
+      } else {
+        if (standPat <= alpha) {
+          return standPat;
+        }
+        beta = Math.min(beta, standPat);
+      }
+
+      List<Move> noisyMoves = new ArrayList<>();
+      for (Move move : validMoves) {
+        if (isNoisy(move)) {
+          noisyMoves.add(move);
+        }
+      }
+
+      if (noisyMoves.isEmpty() || ply >= MoveOrderer.MAX_PLY - 1) {
+        return standPat;
+      }
+
+      List<Move> moves = moveOrderer.orderMoves(noisyMoves, searchBoard, ply, TranspositionTable.NO_MOVE);
+      int bestEval = standPat;
+
+      for (Move move : moves) {
+        searchBoard.makeMove(move);
+        int eval = quiescence(getOppositeColour(colourToMove), ply + 1, alpha, beta);
+        searchBoard.unmakeMove();
+
+        if (aborted) {
+          return 0;
+        }
+
+        if (isMaximiser ? eval > bestEval : eval < bestEval) {
+          bestEval = eval;
+        }
+
+        if (isMaximiser) {
+          alpha = Math.max(alpha, eval);
+        } else {
+          beta = Math.min(beta, eval);
+        }
 
-        // Pruning magic here
         if (beta <= alpha) {
+          // Not in @noBetaCutoffs: quiescence nodes aren't interior nodes (see SearchStats)
+          noQuiescenceCutoffs++;
           break;
         }
       }
 
-      bestChildData = Collections.min(childrenValues);
+      return bestEval;
     }
 
-    // Update current node value as the min/max of children
-    // We only update the weight
-    value = new NodeData(currNode.value.currBoard, currNode.value.move,
-                         bestChildData.weight, currNode.value.colourToMove);
-    currNode.value = value;
+    // Same as minimax, but keeps track of which move is best at the root
+    // Returns null if the search was aborted before finishing this iteration
+    private Move minimaxRoot(int maxDepth, List<Move> moves) {
+      long key = searchBoard.getZobristKey();
+      int alpha = Integer.MIN_VALUE;
+      int beta = Integer.MAX_VALUE;
+      Move bestMove = moves.get(0);
+      int bestEval = isMaximiser() ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+
+      for (Move move : moves) {
+        searchBoard.makeMove(move);
+        int eval = minimax(maxDepth, getOppositeColour(colour), 1, alpha, beta);
+        searchBoard.unmakeMove();
+
+        if (aborted) {
+          return null;
+        }
 
-    visitedNodesCount++;
-    return value;
-  }
+        // Only strictly better moves replace the best move,
+        // since later moves may only have been searched up to a bound
+        if (isMaximiser() ? eval > bestEval : eval < bestEval) {
+          bestEval = eval;
+          bestMove = move;
+        }
+
+        if (isMaximiser()) {
+          alpha = Math.max(alpha, eval);
+        } else {
+          beta = Math.min(beta, eval);
+        }
+      }
+
+      transpositionTable.store(key, maxDepth, bestEval, TranspositionTable.EXACT,
+          MoveOrderer.encodeMove(bestMove));
+      evaluation = bestEval;
+
+      return bestMove;
+    }
+
+    // Same as minimaxRoot, but with the root moves searched in parallel (see rootSplitPool)
+    private Move minimaxRootSplit(int maxDepth, List<Move> moves) {
+      long key = searchBoard.getZobristKey();
+      Colour opposite = getOppositeColour(colour);
+
+      // Young brothers wait: the first move sets the window for the rest
+      searchBoard.makeMove(moves.get(0));
+      int firstEval = minimax(maxDepth, opposite, 1, Integer.MIN_VALUE, Integer.MAX_VALUE);
+      searchBoard.unmakeMove();
+
+      if (aborted) {
+        return null;
+      }
+
+      int noMoves = moves.size();
+      int[] evals = new int[noMoves];
+      // Best score so far when each search started
+      int[] windows = new int[noMoves];
+      // A score better than its window is exact, the rest are bounds (no better than the window)
+      boolean[] isExact = new boolean[noMoves];
+      evals[0] = firstEval;
+      isExact[0] = true;
+      AtomicInteger bestSoFar = new AtomicInteger(firstEval);
+      boolean canAbortIteration = canAbort;
+
+      List<RecursiveAction> tasks = new ArrayList<>();
+      for (int i = 1; i < noMoves; i++) {
+        int moveIndex = i;
+        tasks.add(new RecursiveAction() {
+          @Override
+          protected void compute() {
+            Searcher searcher = getRootSplitSearcher();
+            searcher.canAbort = canAbortIteration;
+
+            int window = bestSoFar.get();
+            int eval = searcher.searchRootMove(searchBoard, moves.get(moveIndex), maxDepth, window);
+            evals[moveIndex] = eval;
+            windows[moveIndex] = window;
+            isExact[moveIndex] = isBetter(eval, window);
+
+            if (isMaximiser()) {
+              bestSoFar.accumulateAndGet(eval, Math::max);
+            } else {
+              bestSoFar.accumulateAndGet(eval, Math::min);
+            }
+          }
+        });
+      }
+
+      rootSplitPool.invoke(new RecursiveAction() {
+        @Override
+        protected void compute() {
+          invokeAll(tasks);
+        }
+      });
+
+      if (stopSearch) {
+        aborted = true;
+        return null;
+      }
+
+      int bestEval = bestSoFar.get();
+      int bestIndex = 0;
+      while (!(isExact[bestIndex] && evals[bestIndex] == bestEval)) {
+        bestIndex++;
+      }
+
+      // Moves before it that failed low against a window of exactly the best score
+      // might have the best score too: search them again to find out
+      for (int i = 1; i < bestIndex; i++) {
+        if (isExact[i] || windows[i] != bestEval) {
+          continue;
+        }
+
+        int window = isMaximiser() ? bestEval - 1 : bestEval + 1;
+        int eval = searchRootMove(searchBoard, moves.get(i), maxDepth, window);
+        if (aborted) {
+          return null;
+        }
+
+        if (eval == bestEval) {
+          bestIndex = i;
+          break;
+        }
+      }
+
+      Move bestMove = moves.get(bestIndex);
+      transpositionTable.store(key, maxDepth, bestEval, TranspositionTable.EXACT,
+          MoveOrderer.encodeMove(bestMove));
+      evaluation = bestEval;
 
-  private void extendNode(NodeTree<NodeData> tree, NodeTree.Node<NodeData> curr, Colour colourToMove,
-                          int currDepth, int maxDepth) {
-    // Base case: max depth exceeded
-    if (currDepth >= maxDepth) {
-      return;
+      return bestMove;
     }
-    // Base case: player wins in current board
-    if (curr.value.currBoard.checkWin(colourToMove)) return;
-    // Base case: opponent wins in current board
-    if (curr.value.currBoard.checkWin(getOppositeColour(colourToMove))) return;
 
-    // Base case: current board is a draw
-    Player playerOfCurrBoard = new Player(colourToMove, curr.value.currBoard);
+    // Whether @eval is strictly better than @other for the side to move at the root
+    private boolean isBetter(int eval, int other) {
+      return isMaximiser() ? eval > other : eval < other;
+    }
 
-    if (curr.value.currBoard.checkDraw(playerOfCurrBoard)) {
-      curr.value.weight = 0;
-      return;
+    /**
+     * Searches @move (of @rootBoard, which is not changed) with @window as the score to beat,
+     * i.e. the score is exact if it is better than @window for the side to move at the root
+     * Uses a copy of @rootBoard, so other threads can search the root at the same time.
+     */
+    private int searchRootMove(BitBoard rootBoard, Move move, int maxDepth, int window) {
+      BitBoard board = new BitBoard(rootBoard);
+      int encodedMove = MoveOrderer.encodeMove(move);
+      // @move refers to pieces of @rootBoard, find the same move on the copy
+      Move moveOnCopy = new Player(colour, board).getValidMoves().stream()
+          .filter(m -> MoveOrderer.encodeMove(m) == encodedMove)
+          .findFirst()
+          .orElseThrow();
+
+      BitBoard previousBoard = searchBoard;
+      searchBoard = board;
+      searchBoard.makeMove(moveOnCopy);
+      int eval = isMaximiser()
+          ? minimax(maxDepth, getOppositeColour(colour), 1, window, Integer.MAX_VALUE)
+          : minimax(maxDepth, getOppositeColour(colour), 1, Integer.MIN_VALUE, window);
+      searchBoard = previousBoard;
+
+      return eval;
     }
 
-    // Recursive case: extend node
-    List<Move> moves = playerOfCurrBoard.getValidMoves();
-    // Let's shuffle the order of moves for variety
-    Collections.shuffle(moves);
+    /**
+     * Iterative deepening
+     *
+     * Searches depth 1, 2, 3, ... until a limit in @searchLimits is reached (or for helper
+     * threads, until the main thread is done),
+     * and returns the best move of the last iteration that completed.
+     * The best move of each iteration is searched first in the next one.
+     */
+    private Move iterativeDeepening() {
+      resetCounters();
+      aborted = false;
+      canAbort = false;
+      evaluation = 0;
+      searchBoard = boardCopies[id];
+
+      List<Move> validMoves = new Player(colour, searchBoard).getValidMoves();
+      List<Move> moves;
+      if (isMainThread()) {
+        // The same seed always gives the same order (see rootMoveOrderer)
+        moves = rootMoveOrderer.orderMoves(validMoves, searchBoard, 0, TranspositionTable.NO_MOVE);
+      } else {
+        long entry = transpositionTable.probe(searchBoard.getZobristKey());
+        int ttMove = (entry == 0) ? TranspositionTable.NO_MOVE : TranspositionTable.getBestMove(entry);
+        moves = moveOrderer.orderMoves(validMoves, searchBoard, 0, ttMove);
+      }
+
+      Move bestMove = moves.get(0);
 
-    for (Move move : moves) {
-      Board boardCopy = curr.value.currBoard.copy();
+      if (moves.size() == 1) {
+        // Nothing to think about
+        return bestMove;
+      }
 
-      // Make move and create node
-      Player playerOfNewBoard = new Player(colourToMove, boardCopy);
-      playerOfNewBoard.makeMove(move);
+      if (isMainThread()) {
+        Move exactMove = chooseExactMove(moves);
+        if (exactMove != null) {
+          return exactMove;
+        }
+      }
+
+      // Helper threads skip depths differently to the main thread
+      int startDepth = 1 + (id % 2);
+
+      for (int depth = startDepth; depth <= searchLimits.getMaxDepth(); depth++) {
+        SearchIterationEvent iterationEvent = new SearchIterationEvent();
+        iterationEvent.begin();
+        long iterationStartTime = System.nanoTime();
+        long iterationStartNodes = countIterationNodes();
+
+        Move iterationBestMove = (rootSplitPool != null && isMainThread())
+            ? minimaxRootSplit(depth, moves)
+            : minimaxRoot(depth, moves);
+
+        if (iterationEvent.shouldCommit()) {
+          iterationEvent.positionHash = searchBoard.getZobristKey();
+          iterationEvent.depth = depth;
+          iterationEvent.nodes = countIterationNodes() - iterationStartNodes;
+          iterationEvent.searcherId = id;
+          iterationEvent.completed = iterationBestMove != null;
+          iterationEvent.evaluation = evaluation;
+          iterationEvent.commit();
+        }
+
+        if (iterationBestMove == null) {
+          break;
+        }
+
+        bestMove = iterationBestMove;
+        canAbort = true;
+
+        if (isMainThread()) {
+          SearchStats.Iteration iteration = new SearchStats.Iteration(depth,
+              countIterationNodes() - iterationStartNodes, System.nanoTime() - iterationStartTime,
+              evaluation, bestMove.toString());
+          searchStats.addIteration(iteration);
+          for (SearchListener listener : searchListeners) {
+            listener.onIteration(searchStats, iteration);
+          }
+        }
+
+        // Search the best move first next time
+        moves.remove(bestMove);
+        moves.add(0, bestMove);
+
+        // No point looking further once the game is decided
+        if (isWinScore(evaluation)) {
+          break;
+        }
+
+        if (!isMainThread()) {
+          // Helper threads keep going until the main thread is done
+          continue;
+        }
+
+        // Unlikely to finish another iteration in the time left
+        long elapsedMillis = (System.nanoTime() - searchStartTime) / 1_000_000;
+        if (searchLimits.hasTimeLimit() && elapsedMillis * 2 > searchLimits.getTimeLimitMillis()) {
+          break;
+        }
+      }
 
-      NodeTree.Node<NodeData> child
-          = tree.addNode(new NodeData(boardCopy, move, getOppositeColour(colourToMove)), curr);
-      // Extend child node
-      extendNode(tree, child, getOppositeColour(colourToMove), currDepth + 1, maxDepth);
+      return bestMove;
     }
-  }
 
-  private NodeTree<NodeData> createTree(Board currBoard) {
-    NodeTree<NodeData> tree = new NodeTree<>();
-    assert(colour == game.getPlayerTurn().getColour());
-    tree.setRootNode(new NodeData(currBoard, colour));
-    extendNode(tree, tree.getRootNode(), colour, 0, MAX_DEPTH);
-    return tree;
+    /**
+     * Best move from the tablebase (or race resolver), or null if the result of the root
+     * or one of its children is not known (then the search still uses them in the tree)
+     * Recorded as an iteration of depth 1, with the exact evaluation.
+     */
+    private Move chooseExactMove(List<Move> moves) {
+      if (getExactScore(colour, 0) == NO_EXACT_SCORE) {
+        return null;
+      }
+
+      long startTime = System.nanoTime();
+      Colour opposite = getOppositeColour(colour);
+      Move bestMove = null;
+      int bestEval = 0;
+
+      for (Move move : moves) {
+        searchBoard.makeMove(move);
+        visitedNodesCount++;
+        int eval = searchBoard.checkWin(colour)
+            ? evaluateNode(opposite, 1)
+            : getExactScore(opposite, 1);
+        searchBoard.unmakeMove();
+
+        if (eval == NO_EXACT_SCORE) {
+          return null;
+        }
+        if (bestMove == null || (isMaximiser() ? eval > bestEval : eval < bestEval)) {
+          bestEval = eval;
+          bestMove = move;
+        }
+      }
+
+      evaluation = bestEval;
+      SearchStats.Iteration iteration = new SearchStats.Iteration(1, moves.size(),
+          System.nanoTime() - startTime, evaluation, bestMove.toString());
+      searchStats.addIteration(iteration);
+      for (SearchListener listener : searchListeners) {
+        listener.onIteration(searchStats, iteration);
+      }
+
+      return bestMove;
+    }
+
+    // Nodes of the threads that complete iterations together (see SearchStats)
+    private long countIterationNodes() {
+      if (!isMainThread()) {
+        return visitedNodesCount;
+      }
+
+      long noNodes = visitedNodesCount;
+      for (Searcher searcher : rootSplitSearchers.values()) {
+        noNodes += searcher.visitedNodesCount;
+      }
+      return noNodes;
+    }
   }
 
   @Override
   public Move chooseMove() {
-    Move chosenMove;
+    assert(colour == game.getPlayerTurn().getColour());
+    ChooseMoveEvent event = new ChooseMoveEvent();
+    event.begin();
+
+    // One copy per thread and search, every node after that is reached by making / unmaking moves
+    // (copied here, so the game's board is only read by this thread)
+    boardCopies = new BitBoard[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      boardCopies[i] = new BitBoard(game.getBoard());
+    }
 
-    NodeTree<NodeData> tree = createTree(game.getBoard());
-    int childIndex = minimax(tree, MAX_DEPTH, isMaximiser());
-    NodeData chosenMoveData = tree.getRootNode().getChild(childIndex).value;
+    searchStats = new SearchStats(numThreads, parallelMode);
+    searchStartTime = System.nanoTime();
+    stopSearch = false;
+    rootSplitNodeCount.set(0);
+    transpositionTable.newSearch();
+    transpositionTable.resetStats();
+
+    List<Future<?>> helperResults = new ArrayList<>();
+    for (Searcher helper : helperSearchers) {
+      helper.moveOrderer.newSearch();
+      helperResults.add(helperThreads.submit(helper::iterativeDeepening));
+    }
 
-    System.out.println("Size of tree: " + tree.getSize());
-    System.out.println("No. of visited nodes: " + visitedNodesCount);
-    System.out.println("Evaluation (me): " + chosenMoveData.weight);
+    for (Searcher searcher : rootSplitSearchers.values()) {
+      searcher.moveOrderer.newSearch();
+      searcher.resetCounters();
+      searcher.aborted = false;
+    }
+
+    mainSearcher.moveOrderer.newSearch();
+    mainSearcher.moveOrderer.resetStats();
+    Move chosenMove = mainSearcher.iterativeDeepening();
+
+    // Wait for the helpers to stop, so they don't keep using the table in the next search
+    stopSearch = true;
+    for (Future<?> helperResult : helperResults) {
+      try {
+        helperResult.get();
+      } catch (InterruptedException | ExecutionException e) {
+        throw new IllegalStateException("Helper search thread failed", e);
+      }
+    }
+
+    searchStats.setElapsedNanos(System.nanoTime() - searchStartTime);
+
+    List<Searcher> searchers = new ArrayList<>();
+    searchers.add(mainSearcher);
+    searchers.addAll(helperSearchers);
+    searchers.addAll(rootSplitSearchers.values());
+
+    long noNodes = 0, noLeafEvaluations = 0, noInteriorNodes = 0, noBetaCutoffs = 0, noQuiescenceNodes = 0;
+    long noQuiescenceEvaluations = 0, noQuiescenceCutoffs = 0, noTablebaseHits = 0, noResolvedRaces = 0;
+    for (Searcher searcher : searchers) {
+      noNodes += searcher.visitedNodesCount;
+      noLeafEvaluations += searcher.noLeafEvaluations;
+      noInteriorNodes += searcher.noInteriorNodes;
+      noBetaCutoffs += searcher.noBetaCutoffs;
+      noQuiescenceNodes += searcher.noQuiescenceNodes;
+      noQuiescenceEvaluations += searcher.noQuiescenceEvaluations;
+      noQuiescenceCutoffs += searcher.noQuiescenceCutoffs;
+      noTablebaseHits += searcher.noTablebaseHits;
+      noResolvedRaces += searcher.noResolvedRaces;
+    }
+    searchStats.setTotals(noNodes, noLeafEvaluations, noInteriorNodes, noBetaCutoffs, noQuiescenceNodes,
+        noQuiescenceEvaluations, noQuiescenceCutoffs);
+    searchStats.setTranspositionTableStats(transpositionTable.getNoProbes(), transpositionTable.getNoHits());
+    searchStats.setFirstMoveCutoffRate(mainSearcher.moveOrderer.getFirstMoveCutoffRate());
+    searchStats.setExactResults(noTablebaseHits, noResolvedRaces);
+
+    for (SearchListener listener : searchListeners) {
+      listener.onSearchComplete(searchStats);
+    }
+    if (logging) {
+      System.out.print(searchStats);
+      System.out.println(transpositionTable);
+    }
 
-    chosenMove = chosenMoveData.move;
+    if (event.shouldCommit()) {
+      event.ai = getClass().getSimpleName();
+      event.colour = colour.toString();
+      event.positionHash = game.getBoard().getZobristKey();
+      event.depth = searchStats.getDepthReached();
+      event.nodes = searchStats.getNoNodes();
+      event.leafEvaluations = searchStats.getNoLeafEvaluations();
+      event.quiescenceEvaluations = searchStats.getNoQuiescenceEvaluations();
+      event.threads = numThreads;
+      event.evaluation = searchStats.getEvaluation();
+      event.move = chosenMove.toString();
+      event.commit();
+    }
 
     return chosenMove;
   }
 
-  static class NodeData implements Comparable<NodeData> {
-    Board currBoard;
-    Colour colourToMove;
-    Move move;
-    int weight;
+  public TranspositionTable getTranspositionTable() {
+    return transpositionTable;
+  }
 
-    public NodeData(Board board, Move move, int weight, Colour colour) {
-      this.currBoard = board;
-      this.colourToMove = colour;
-      this.move = move;
-      this.weight = weight;
+  /**
+   * Tactical positions for testing quiescence search: position (see Perft), best move
+   *
+   * Positions after 6 to 19 random moves from the start, where the side to move can capture.
+   * The best move is the one with the best result when every move is searched to depth 9
+   * (the reply to depth 8), both with and without quiescence search, and is at least 100
+   * better than the next move without it. Positions were kept or dropped on those rules only,
+   * not on which searches get them right.
+   */
+  private static final String[][] TACTICAL_SUITE = {
+      {"8/pp6/4p3/3p1ppp/Pp3P1P/2P3P1/3PP3/8 w -", "Pc3-b4"},
+      {"8/1pp1p2p/6p1/p2p1p1P/1P6/3PP3/P1P2PP1/8 b -", "pa5-b4"},
+      {"8/2ppp3/1p3p2/p5Pp/P2P4/4P1P1/1PP2P2/8 b -", "pf6-g5"},
+      {"8/p2ppp1p/6p1/1p4P1/P1p2P2/3PP2P/1PP5/8 b -", "pc4-d3"},
+      {"8/3p4/1pp1p2p/p2P1pp1/PP2P3/2P2P2/6PP/8 b -", "pc6-d5"},
+      {"8/3p2p1/2p1pp2/1p5p/p1PPP1PP/P4P2/1P6/8 b -", "ph5-g4"},
+      {"8/p2p2p1/3P4/1pp1p2p/1P3p1P/2P1P3/P4PP1/8 w -", "Pb4-c5"},
+      {"8/1p1p1p1p/2p5/p3p1p1/3P4/PP5P/2P1PPP1/8 b -", "pe5-d4"},
+      {"8/1p4pp/3pp2P/p1p2p2/5P2/P5P1/1PPPP3/8 b -", "pg7-h6"},
+      {"8/2pp2pp/pp3p2/4P3/1P1p4/P4P2/2P3PP/8 b -", "pf6-e5"},
+      {"8/5pp1/p6p/2pppP2/1p2P1P1/PP6/2PP3P/8 w -", "Pa3-b4"},
+      {"8/1p2p2p/8/pPpp2p1/2P3p1/P3P3/3P1P1P/8 w -", "Pc4-d5"},
+      {"8/pp1pp2p/2p5/5pp1/2P3P1/P3P3/1P1P1P1P/8 b -", "pf5-g4"},
+      {"8/2ppp3/p5pp/1p3P2/8/PP2P3/2PP1P1P/8 w -", "Pf5-g6"},
+      {"8/pp2pp2/8/P1p3pp/3P3P/3P1PP1/1P2P3/8 b -", "pg5-h4"},
+      {"8/1pp1p3/p5p1/3p1p1p/2P5/PP4PP/3PPP2/8 w -", "Pc4-d5"},
+      {"8/1p1pppp1/p1p5/7p/2P3P1/1P6/P2PPP1P/8 w -", "Pg4-h5"},
+      {"8/1p3pp1/4p3/p2p3p/PPpP1P1P/2P3P1/4P3/8 w -", "Pb4-a5"},
+      {"8/1p1p2p1/8/p6p/1P1pPpP1/7P/2P2P2/8 w -", "Pb4-a5"},
+      {"8/2ppp1pp/p7/2P2p2/8/p4PP1/1P1PP2P/8 w -", "Pb2-a3"},
+      {"8/pp1p1p1p/8/2P1p1p1/5P2/3P3P/P1P1P1P1/8 w -", "Pf4-g5"},
+      {"8/p2p2pp/5p2/1pp1p2P/2P1P3/8/PP1P1PP1/8 w -", "Pc4-b5"},
+      {"8/pp5p/4p3/2p2ppP/P3P3/5PP1/1p1P4/8 b -", "pb2-b1"},
+      {"8/1p1p1p2/2p5/4p1pp/Pp1P2P1/4P2P/2P2P2/8 w -", "Pg4-h5"},
+      {"8/p7/2pp1ppp/1p2p1P1/PP2P3/2PP1P1P/8/8 b -", "pf6-g5"},
+      {"8/3p4/p1p3p1/1p1Ppp1p/5P1P/PPP1P1P1/8/8 b -", "pe5-f4"},
+      {"8/p1pp3p/1p2p3/5pp1/PPP2P2/8/3PP1PP/8 w -", "Pf4-g5"},
+      {"8/1pppp2p/6p1/5p2/p2P1P2/1P4P1/P1P1P2P/8 w -", "Pb3-a4"},
+      {"8/ppppp3/7p/6p1/1P4p1/2P2P2/P2PP2P/8 w -", "Pf3-g4"},
+      {"8/p1p1p3/3p2pp/1p3pP1/1PP1P3/3P4/P4P1P/8 b -", "ph6-g5"},
+      {"8/1ppp2pp/5p2/4p3/p5P1/1PP2P2/P2PP2P/8 w -", "Pb3-a4"},
+      {"8/p2p1p1p/8/1pp1pPp1/2P1P3/1P6/P2P2PP/8 w -", "Pc4-b5"},
+      {"8/2pp4/4pp1p/pp3PpP/8/2PP4/PP2P1P1/8 b -", "pe6-f5"},
+      {"8/2ppppp1/7p/pp6/1P6/3P1P2/P1P1P1PP/8 w -", "Pb4-a5"},
+      {"8/1pp1p2p/p2p4/5pp1/7P/P2P4/1PP1PPP1/8 w -", "Ph4-g5"},
+      {"8/2pp2pp/8/pp1Ppp2/P4P2/4P3/1PP3PP/8 b -", "pe5-f4"},
+      {"8/1p6/p1pp2p1/4pp1p/2P2P1P/PP4P1/3PP3/8 w -", "Pc4-c5"},
+      {"8/p3p3/5p2/Pp1p2pp/1P1p3P/4P3/2P2PP1/8 w -", "Pe3-d4"},
+      {"8/5ppp/3pp3/ppP5/4PPP1/8/P1PP3P/8 b -", "pd6-c5"},
+      {"8/p4p1p/1p6/1Pp1p1P1/P3P3/3p1P2/2PP2P1/8 b -", "pd3-c2"},
+  };
+
+  public static void main(String[] args) {
+    AIMinimax ai = new AIMinimax(null, null);
+    BitBoard b = new BitBoard();
+
+    long passedWhitePawns = ai.getPassedPawns(b, Colour.WHITE);
+    System.out.println("No. of passed white pawns (expected 0): " + Long.bitCount(passedWhitePawns));
+
+    // Test: material and space from the board's evaluation state match the formula on the pieces
+    Random random = new Random(0);
+    int noPositions = 0;
+
+    for (int i = 0; i < 200; i++) {
+      Board board = new BitBoard();
+
+      while (!board.checkWin(Colour.WHITE) && !board.checkWin(Colour.BLACK)) {
+        List<Move> moves = new Player(board.getColourToMove(), board).getValidMoves();
+        if (moves.isEmpty()) {
+          break;
+        }
+        board.makeMove(moves.get(random.nextInt(moves.size())));
+
+        int expected = 0;
+        expected += (board.getPieces(Colour.WHITE).size() - board.getPieces(Colour.BLACK).size())
+            * ai.EVALUATION_FACTOR;
+        int whiteSpace = board.getPieces(Colour.WHITE).stream().map(board::getSpaceOfPiece)
+            .reduce(Integer::sum).orElse(-1);
+        int blackSpace = board.getPieces(Colour.BLACK).stream().map(board::getSpaceOfPiece)
+            .reduce(Integer::sum).orElse(-1);
+        expected += (whiteSpace - blackSpace) * ai.EVALUATION_FACTOR * 0.2;
+
+        if (ai.evaluateMaterialAndSpace(board) != expected) {
+          throw new IllegalStateException("Evaluation differs from formula\n" + board);
+        }
+        noPositions++;
+      }
+    }
+
+    System.out.println("Evaluation matched formula in " + noPositions + " positions");
+
+    // Speedup of Lazy SMP: time to reach the same depth with more threads
+    int depth = 9;
+    // Warmup, so the first timed search (1 thread) isn't the one paying for JIT compilation.
+    // With both 1 and 2 threads, so the helper code gets compiled too
+    for (int i = 0; i < 3; i++) {
+      for (int numThreads : new int[] {1, 2}) {
+        try (AIMinimax warmupAi = new AIMinimax(new Game(), Colour.WHITE, SearchLimits.ofDepth(depth), 64, i)) {
+          warmupAi.setNumThreads(numThreads);
+          warmupAi.chooseMove();
+        }
+      }
+    }
+    // Only printed: the speedup depends on the cores of the machine (with 1 core there is none)
+    for (int numThreads : new int[] {1, 2, 4, 8, 16}) {
+      Game game = new Game();
+      try (AIMinimax smpAi = new AIMinimax(game, Colour.WHITE, SearchLimits.ofDepth(depth), 64, 0)) {
+        smpAi.setNumThreads(numThreads);
+        Move smpMove = smpAi.chooseMove();
+        SearchStats stats = smpAi.getSearchStats();
+
+        // Test: a legal move, and the nodes add up the same way with any number of threads
+        // (iterations count the main thread's nodes, the totals every thread's)
+        boolean isLegal = game.getPlayerTurn().getValidMoves().stream()
+            .anyMatch(move -> MoveOrderer.encodeMove(move) == MoveOrderer.encodeMove(smpMove));
+        long noIterationNodes = stats.getIterations().stream().mapToLong(SearchStats.Iteration::getNoNodes).sum();
+        long noHelperNodes = smpAi.helperSearchers.stream().mapToLong(helper -> helper.visitedNodesCount).sum();
+        if (!isLegal || stats.getDepthReached() != depth
+            || noIterationNodes != smpAi.mainSearcher.visitedNodesCount
+            || stats.getNoNodes() != smpAi.mainSearcher.visitedNodesCount + noHelperNodes) {
+          throw new IllegalStateException("Search with " + numThreads + " threads chose " + smpMove + "\n" + stats);
+        }
+        System.out.println("Threads: " + numThreads + ", time to depth " + depth + ": "
+            + stats.getElapsedNanos() / 1_000_000 + "ms, " + stats.getNodesPerSecond() + " nodes/s");
+      }
     }
 
-    public NodeData(Board board, Move move, Colour colour) {
-      this(board, move, 0, colour);
+    // Test: listeners see every iteration, and the stats add up
+    Game statsGame = new Game();
+    AIMinimax statsAi = new AIMinimax(statsGame, Colour.WHITE, SearchLimits.ofDepth(8), 16, 0);
+    List<SearchStats.Iteration> iterationsSeen = new ArrayList<>();
+    statsAi.addSearchListener(new SearchListener() {
+      @Override
+      public void onIteration(SearchStats stats, SearchStats.Iteration iteration) {
+        iterationsSeen.add(iteration);
+      }
+    });
+    statsAi.setLogging(true);
+    statsAi.chooseMove();
+
+    SearchStats stats = statsAi.getSearchStats();
+    long noIterationNodes = iterationsSeen.stream().mapToLong(SearchStats.Iteration::getNoNodes).sum();
+    if (!iterationsSeen.equals(stats.getIterations()) || stats.getDepthReached() != 8
+        || noIterationNodes != stats.getNoNodes() || stats.getNoQuiescenceEvaluations() > stats.getNoQuiescenceNodes()
+        || stats.getNoLeafEvaluations() > stats.getNoNodes() - stats.getNoQuiescenceNodes()
+        || stats.getBetaCutoffRatio() > 1) {
+      throw new IllegalStateException("Search stats don't add up\n" + stats);
     }
+    System.out.println("Search stats add up over " + iterationsSeen.size() + " iterations");
+
+    // Test: root split plays the same moves as the sequential search (same seed, whole games)
+    int noMovesCompared = 0;
+    for (int seed = 0; seed < 4; seed++) {
+      Game game = new Game();
+      Map<Colour, AIMinimax> sequentialAis = new EnumMap<>(Colour.class);
+      Map<Colour, AIMinimax> rootSplitAis = new EnumMap<>(Colour.class);
+
+      for (Colour c : Colour.values()) {
+        sequentialAis.put(c, new AIMinimax(game, c, SearchLimits.ofDepth(6), 16, seed));
+        AIMinimax rootSplitAi = new AIMinimax(game, c, SearchLimits.ofDepth(6), 16, seed);
+        rootSplitAi.setNumThreads(4, ParallelMode.ROOT_SPLIT);
+        rootSplitAis.put(c, rootSplitAi);
+      }
+
+      while (game.getStatus() == Status.PLAYING) {
+        Colour c = game.getPlayerTurn().getColour();
+        Move sequentialMove = sequentialAis.get(c).chooseMove();
+        Move rootSplitMove = rootSplitAis.get(c).chooseMove();
 
-    public NodeData(Board board, Colour colour) {
-      this(board, null, 0, colour);
+        if (MoveOrderer.encodeMove(sequentialMove) != MoveOrderer.encodeMove(rootSplitMove)) {
+          throw new IllegalStateException("Root split chose " + rootSplitMove
+              + " instead of " + sequentialMove + "\n" + game.getBoard());
+        }
+        game.makeMove(sequentialMove);
+        noMovesCompared++;
+      }
+
+      // Searchers are reused across the whole game, and dropped with the pool
+      for (AIMinimax rootSplitAi : rootSplitAis.values()) {
+        if (rootSplitAi.rootSplitSearchers.size() > 2 * rootSplitAi.numThreads) {
+          throw new IllegalStateException(rootSplitAi.rootSplitSearchers.size() + " root split searchers for "
+              + rootSplitAi.numThreads + " threads");
+        }
+        rootSplitAi.setNumThreads(4, ParallelMode.ROOT_SPLIT);
+        if (!rootSplitAi.rootSplitSearchers.isEmpty()) {
+          throw new IllegalStateException("Root split searchers kept after rebuilding the pool");
+        }
+        rootSplitAi.close();
+      }
     }
 
-    @Override
-    public int compareTo(NodeData other) {
-      return Integer.compare(this.weight, other.weight);
+    System.out.println("Root split matched the sequential search in " + noMovesCompared + " moves");
+
+    // Test: the node limit is for all root split threads together, not for each of them
+    long nodeLimit = 50_000;
+    AIMinimax nodeLimitAi = new AIMinimax(new Game(), Colour.WHITE, SearchLimits.ofNodes(nodeLimit), 16, 0);
+    nodeLimitAi.setNumThreads(4, ParallelMode.ROOT_SPLIT);
+    nodeLimitAi.chooseMove();
+    nodeLimitAi.close();
+    // Each thread can be up to NODES_BETWEEN_LIMIT_CHECKS nodes behind, and finishes its batch
+    long maxNodes = nodeLimit + 2L * 4 * NODES_BETWEEN_LIMIT_CHECKS;
+    if (nodeLimitAi.getSearchStats().getNoNodes() > maxNodes) {
+      throw new IllegalStateException("Root split searched " + nodeLimitAi.getSearchStats().getNoNodes()
+          + " nodes with a limit of " + nodeLimit);
+    }
+    System.out.println("Root split searched " + nodeLimitAi.getSearchStats().getNoNodes()
+        + " nodes with a limit of " + nodeLimit);
+
+    // Test: quiescence search finds the best move in more of TACTICAL_SUITE than plain search
+    // at the same depth, and at least as many as plain search 1 ply deeper (with more nodes)
+    int[] noTacticsSolved = new int[3];
+    long[] noTacticNodes = new long[3];
+    int noQuiescenceOnly = 0, noPlainOnly = 0;
+    for (String[] tactic : TACTICAL_SUITE) {
+      // Quiescence at depth 2, plain at depth 2, plain at depth 3
+      boolean[] solved = new boolean[3];
+      for (int k = 0; k < 3; k++) {
+        BitBoard tacticBoard = Perft.parsePosition(tactic[0]);
+        AIMinimax tacticAi = new AIMinimax(new Game(tacticBoard), tacticBoard.getColourToMove(),
+            SearchLimits.ofDepth(k == 2 ? 3 : 2), 4, 0);
+        tacticAi.setQuiescenceSearch(k == 0);
+        solved[k] = tacticAi.chooseMove().toString().equals(tactic[1]);
+        noTacticNodes[k] += tacticAi.getSearchStats().getNoNodes();
+        if (solved[k]) {
+          noTacticsSolved[k]++;
+        }
+      }
+      if (solved[0] && !solved[1]) {
+        noQuiescenceOnly++;
+      } else if (solved[1] && !solved[0]) {
+        noPlainOnly++;
+      }
     }
 
-    @Override
-    public String toString() {
-      return String.valueOf(weight);
+    // One-sided sign test on the positions only one of the depth 2 searches solves:
+    // the chance of quiescence doing at least this well if each were as likely to solve them
+    int noDiscordant = noQuiescenceOnly + noPlainOnly;
+    double pValue = 0;
+    double binomial = 1;
+    for (int k = 0; k <= noDiscordant; k++) {
+      if (k >= noQuiescenceOnly) {
+        pValue += binomial / Math.pow(2, noDiscordant);
+      }
+      binomial = binomial * (noDiscordant - k) / (k + 1);
     }
-  }
 
-  public static void main(String[] args) {
-    AIMinimax ai = new AIMinimax(null, null);
-    Board b = new Board();
+    String tacticsSummary = String.format("Tactical suite (%d positions): quiescence depth 2 solved %d (%d nodes), "
+            + "plain depth 2 %d (%d nodes), plain depth 3 %d (%d nodes), "
+            + "%d solved by quiescence only, %d by plain only, p = %.4f",
+        TACTICAL_SUITE.length, noTacticsSolved[0], noTacticNodes[0], noTacticsSolved[1], noTacticNodes[1],
+        noTacticsSolved[2], noTacticNodes[2], noQuiescenceOnly, noPlainOnly, pValue);
+    if (pValue >= 0.05 || noTacticsSolved[0] < noTacticsSolved[2]) {
+      throw new IllegalStateException(tacticsSummary);
+    }
+    System.out.println(tacticsSummary);
+
+    // Both sides have a passed pawn but d4 and e5 still interact, black's a3 is further
+    // ahead so black should be winning the race
+    BitBoard raceBoard = Perft.parsePosition("8/8/8/4p3/3P4/p6P/8/8 w -");
+    if (RaceResolver.resolve(raceBoard) != RaceResolver.UNRESOLVED
+        || ai.evaluatePosition(raceBoard, Colour.WHITE) != -RACE_WIN_SCORE) {
+      throw new IllegalStateException("Expected black to win the race, got "
+          + ai.evaluatePosition(raceBoard, Colour.WHITE));
+    }
+    System.out.println("Black's more advanced passed pawn wins the race");
+
+    // Win scores: the fastest win should be chosen, not just any winning move
+    // White wins in 1 with b8, h3 also wins (b8 next move) but 2 moves later
+    // (d4 and e5 can still take each other, so the race resolver doesn't settle it at the root)
+    Game winGame = new Game(Perft.parsePosition("8/1P6/8/4p3/p2P4/8/7P/8 w -"));
+    AIMinimax winAi = new AIMinimax(winGame, Colour.WHITE, SearchLimits.ofDepth(6), 4, 0);
+    Move winMove = winAi.chooseMove();
+    if (!winMove.getPosTo().equals(Position.of(7, 1))
+        || winAi.getSearchStats().getEvaluation() != WIN_SCORE - 1) {
+      throw new IllegalStateException("Expected b8 with evaluation " + (WIN_SCORE - 1) + ", got "
+          + winMove + " with " + winAi.getSearchStats().getEvaluation());
+    }
 
-    List<Piece> passedWhitePawns = ai.getPassedPawns(b, Colour.WHITE);
-    System.out.println(passedWhitePawns);
+    // Same again with what the first search left in the transposition table,
+    // the win is stored relative to the position so should still be 1 move away
+    winAi.chooseMove();
+    if (winAi.getSearchStats().getEvaluation() != WIN_SCORE - 1) {
+      throw new IllegalStateException("Expected evaluation " + (WIN_SCORE - 1)
+          + " from the transposition table, got " + winAi.getSearchStats().getEvaluation());
+    }
+    System.out.println("Fastest win chosen (" + winMove + "), also with the transposition table filled");
   }
 }
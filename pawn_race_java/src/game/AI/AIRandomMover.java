@@ -28,8 +28,21 @@ public class AIRandomMover implements AI {
 
   @Override
   public Move chooseMove() {
+    ChooseMoveEvent event = new ChooseMoveEvent();
+    event.begin();
+
     List<Move> validMoves = game.getPlayerTurn().getValidMoves();
-    return validMoves.get(random.nextInt(validMoves.size()));
+    Move chosenMove = validMoves.get(random.nextInt(validMoves.size()));
+
+    if (event.shouldCommit()) {
+      event.ai = getClass().getSimpleName();
+      event.colour = colour.toString();
+      event.positionHash = game.getBoard().getZobristKey();
+      event.move = chosenMove.toString();
+      event.commit();
+    }
+
+    return chosenMove;
   }
 
 }
@@ -0,0 +1,42 @@
+package game.AI;
+
+import jdk.jfr.*;
+
+// JFR event for one call to AI.chooseMove
+@Name("pawnrace.ChooseMove")
+@Label("Choose Move")
+@Category({"Pawn Race", "AI"})
+@Description("An AI choosing a move, with the size of its search")
+@StackTrace(false)
+class ChooseMoveEvent extends Event {
+  @Label("AI")
+  String ai;
+
+  @Label("Colour")
+  String colour;
+
+  @Label("Position Hash")
+  @Description("Zobrist key of the position searched")
+  long positionHash;
+
+  @Label("Depth")
+  int depth;
+
+  @Label("Nodes")
+  long nodes;
+
+  @Label("Leaf Evaluations")
+  long leafEvaluations;
+
+  @Label("Quiescence Evaluations")
+  long quiescenceEvaluations;
+
+  @Label("Threads")
+  int threads;
+
+  @Label("Evaluation")
+  int evaluation;
+
+  @Label("Move")
+  String move;
+}
@@ -0,0 +1,191 @@
+package game.AI;
+
+import game.BitBoard;
+import game.Board;
+import game.PawnMasks;
+import game.misc.Colour;
+import game.misc.Move;
+import game.misc.MoveType;
+import game.misc.Position;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Move ordering for alpha-beta
+ *
+ * Moves are tried in this order:
+ * 1. the transposition table / principal variation move
+ * 2. captures (including en passant), most advanced victim first
+ * 3. pushes of passed pawns, or pawns close to the last row
+ * 4. killer moves (quiet moves that caused a cutoff at the same ply)
+ * 5. everything else, by history heuristic score
+ * Equal scores are broken by a seeded random number, so there is still some variety
+ * (but the same seed gives the same games).
+ */
+public class MoveOrderer {
+  public static final int MAX_PLY = 128;
+
+  private static final int TT_MOVE_SCORE = 1 << 30;
+  private static final int CAPTURE_SCORE = 1 << 28;
+  private static final int PAWN_PUSH_SCORE = 1 << 27;
+  private static final int KILLER_SCORE = 1 << 26;
+  // History scores are halved once one gets this big, so they stay below killers
+  private static final int MAX_HISTORY = 1 << 24;
+  // A pawn is "advanced" this many rows (or fewer) away from its last row
+  private static final int ADVANCED_PAWN_DISTANCE = 2;
+
+  private final Random random;
+  // 2 killer moves per ply
+  private final int[][] killers = new int[MAX_PLY][2];
+  // Indexed by [colour][from square * 64 + to square]
+  private final int[][] history = new int[2][64 * 64];
+  // Reused between calls, indexed by ply
+  private final long[][] sortKeys = new long[MAX_PLY][];
+
+  // Stats
+  private long noCutoffs = 0;
+  private long noFirstMoveCutoffs = 0;
+
+  public MoveOrderer(long seed) {
+    this.random = new Random(seed);
+  }
+
+  // Call at the start of each search
+  public void newSearch() {
+    for (int[] killersAtPly : killers) {
+      Arrays.fill(killersAtPly, TranspositionTable.NO_MOVE);
+    }
+    // Keep some of the history from the last search
+    for (int[] historyOfColour : history) {
+      for (int i = 0; i < historyOfColour.length; i++) {
+        historyOfColour[i] /= 2;
+      }
+    }
+  }
+
+  public static int encodeMove(Move move) {
+    return TranspositionTable.encodeMove(
+        Board.square(move.getPiece().getPosition()), Board.square(move.getPosTo()));
+  }
+
+  private static boolean isCapture(Move move) {
+    return move.getMoveType() == MoveType.CAPTURE || move.getMoveType() == MoveType.EN_PASSANT;
+  }
+
+  // Number of rows a pawn of @colour at @row still has to go
+  private static int getDistanceToLastRow(Board board, Colour colour, int row) {
+    return Math.abs(board.getLastRow(colour) - row);
+  }
+
+  private int scoreMove(Move move, BitBoard board, int ply, int ttMove) {
+    int encodedMove = encodeMove(move);
+    Colour colour = move.getPiece().getColour();
+    Position posTo = move.getPosTo();
+
+    if (encodedMove == ttMove) {
+      return TT_MOVE_SCORE;
+    }
+
+    Colour opposite = (colour == Colour.WHITE) ? Colour.BLACK : Colour.WHITE;
+
+    if (isCapture(move)) {
+      // Taking the most advanced enemy pawn first (it is the most dangerous)
+      int victimRow = (move.getMoveType() == MoveType.EN_PASSANT)
+          ? move.getPosTo().getPosBelow(colour).getRow()
+          : posTo.getRow();
+      return CAPTURE_SCORE + (board.getNoRows() - getDistanceToLastRow(board, opposite, victimRow));
+    }
+
+    int distance = getDistanceToLastRow(board, colour, posTo.getRow());
+    if (distance <= ADVANCED_PAWN_DISTANCE
+        || PawnMasks.isPassed(colour, Board.square(posTo), board.getPawns(opposite))) {
+      return PAWN_PUSH_SCORE + (board.getNoRows() - distance);
+    }
+
+    if (encodedMove == killers[ply][0]) {
+      return KILLER_SCORE + 1;
+    }
+    if (encodedMove == killers[ply][1]) {
+      return KILLER_SCORE;
+    }
+
+    return history[colour.ordinal()][encodedMove];
+  }
+
+  /**
+   * Returns @moves in the order they should be searched
+   * @ttMove is the encoded best move from the transposition table (or NO_MOVE)
+   */
+  public List<Move> orderMoves(List<Move> moves, BitBoard board, int ply, int ttMove) {
+    int noMoves = moves.size();
+    if (sortKeys[ply] == null || sortKeys[ply].length < noMoves) {
+      sortKeys[ply] = new long[Math.max(noMoves, 32)];
+    }
+    long[] keys = sortKeys[ply];
+
+    // Sort key: score | random tie-break | index of move
+    for (int i = 0; i < noMoves; i++) {
+      long score = scoreMove(moves.get(i), board, ply, ttMove);
+      keys[i] = (score << 24) | ((long) random.nextInt(1 << 16) << 8) | i;
+    }
+    Arrays.sort(keys, 0, noMoves);
+
+    // Highest key first
+    ArrayList<Move> orderedMoves = new ArrayList<>(noMoves);
+    for (int i = noMoves - 1; i >= 0; i--) {
+      orderedMoves.add(moves.get((int) (keys[i] & 0xFF)));
+    }
+
+    return orderedMoves;
+  }
+
+  /**
+   * Records that @move caused a beta cutoff
+   * @moveNumber is the index of @move in the order it was searched (0 for the first move)
+   */
+  public void recordCutoff(Move move, int ply, int depth, int moveNumber) {
+    noCutoffs++;
+    if (moveNumber == 0) {
+      noFirstMoveCutoffs++;
+    }
+
+    // Captures are already ordered first
+    if (isCapture(move)) {
+      return;
+    }
+
+    int encodedMove = encodeMove(move);
+    if (killers[ply][0] != encodedMove) {
+      killers[ply][1] = killers[ply][0];
+      killers[ply][0] = encodedMove;
+    }
+
+    int[] historyOfColour = history[move.getPiece().getColour().ordinal()];
+    historyOfColour[encodedMove] += depth * depth;
+
+    if (historyOfColour[encodedMove] >= MAX_HISTORY) {
+      for (int i = 0; i < historyOfColour.length; i++) {
+        historyOfColour[i] /= 2;
+      }
+    }
+  }
+
+  // -------------------- Stats --------------------
+  public long getNoCutoffs() {
+    return noCutoffs;
+  }
+
+  // Fraction of cutoffs caused by the first move searched (higher is better ordering)
+  public double getFirstMoveCutoffRate() {
+    return (noCutoffs == 0) ? 0 : (double) noFirstMoveCutoffs / noCutoffs;
+  }
+
+  public void resetStats() {
+    noCutoffs = 0;
+    noFirstMoveCutoffs = 0;
+  }
+  // -------------------- End of stats --------------------
+}
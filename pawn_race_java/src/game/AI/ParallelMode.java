@@ -0,0 +1,10 @@
+package game.AI;
+
+// How AIMinimax uses more than 1 thread (see AIMinimax.setNumThreads)
+public enum ParallelMode {
+  // Helper threads search the same root, sharing the transposition table
+  LAZY_SMP,
+  // Root moves are split between threads, the same seed always gives the same move
+  // (the move the sequential search returns)
+  ROOT_SPLIT
+}
@@ -0,0 +1,133 @@
+package game.AI;
+
+import game.BitBoard;
+import game.PawnMasks;
+import game.Player;
+import game.misc.Colour;
+import game.misc.Move;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Exact result of a pawn race
+ *
+ * Resolves positions where the pawns can no longer interact: every pawn is either
+ * - a runner: passed, so no enemy pawn can ever block it, take it or be taken by it, or
+ * - blocked: head to head with an enemy pawn, with nothing to take either side,
+ *   so neither pawn can ever move again.
+ * Then the result only depends on how many moves each side's fastest runner needs
+ * (counting the double step from the starting row) and who moves first.
+ * A side with no runners has no moves at all, which is a draw once it is its turn.
+ *
+ * Same encoding as Tablebase: for the side to move,
+ *   n > 0: wins in n plies, n < 0: loses in -n plies, 0: draw
+ */
+public class RaceResolver {
+  public static final int UNRESOLVED = Byte.MIN_VALUE;
+
+  private RaceResolver() {}
+
+  // Moves the most advanced of @runners (of @colour) needs to reach its last row
+  private static int getMovesToLastRow(Colour colour, long runners) {
+    int row = PawnMasks.getMostAdvanced(colour, runners) / 8;
+
+    if (colour == Colour.WHITE) {
+      return (row == 1) ? 5 : 7 - row;
+    }
+    return (row == 6) ? 5 : row;
+  }
+
+  // Squares pawns of @colour in @pawns attack
+  private static long getAttacks(Colour colour, long pawns) {
+    return (colour == Colour.WHITE)
+        ? ((pawns & ~BitBoard.FILE_A) << 7) | ((pawns & ~BitBoard.FILE_H) << 9)
+        : ((pawns & ~BitBoard.FILE_H) >>> 7) | ((pawns & ~BitBoard.FILE_A) >>> 9);
+  }
+
+  // Result for the side to move, or UNRESOLVED if pawns can still interact
+  // Assumes the game is not over
+  public static int resolve(BitBoard board) {
+    long white = board.getPawns(Colour.WHITE);
+    long black = board.getPawns(Colour.BLACK);
+
+    if (board.canTakeEnPassant()
+        || (getAttacks(Colour.WHITE, white) & black) != 0
+        || (getAttacks(Colour.BLACK, black) & white) != 0) {
+      return UNRESOLVED;
+    }
+
+    long whiteRunners = PawnMasks.getPassedPawns(Colour.WHITE, white, black);
+    long blackRunners = PawnMasks.getPassedPawns(Colour.BLACK, black, white);
+    long whiteBlocked = white & (black >>> 8);
+    long blackBlocked = black & (white << 8);
+
+    if ((whiteRunners | whiteBlocked) != white || (blackRunners | blackBlocked) != black) {
+      return UNRESOLVED;
+    }
+
+    Colour colourToMove = board.getColourToMove();
+    long ownRunners = (colourToMove == Colour.WHITE) ? whiteRunners : blackRunners;
+    long opponentRunners = (colourToMove == Colour.WHITE) ? blackRunners : whiteRunners;
+
+    if (ownRunners == 0) {
+      // No moves
+      return 0;
+    }
+
+    Colour opposite = (colourToMove == Colour.WHITE) ? Colour.BLACK : Colour.WHITE;
+    int ownMoves = getMovesToLastRow(colourToMove, ownRunners);
+
+    if (opponentRunners == 0) {
+      // Unless the game ends now, the opponent has no moves next turn
+      return (ownMoves == 1) ? 1 : 0;
+    }
+
+    int opponentMoves = getMovesToLastRow(opposite, opponentRunners);
+    // Moving first wins a tie
+    return (ownMoves <= opponentMoves) ? 2 * ownMoves - 1 : -2 * opponentMoves;
+  }
+
+  // Testing
+  // Compares resolved positions from random games with a brute force search
+  public static void main(String[] args) {
+    Random random = new Random(0);
+    Map<Long, Integer> results = new HashMap<>();
+    int noResolved = 0, noPositions = 0;
+
+    for (int i = 0; i < 2000; i++) {
+      BitBoard board = new BitBoard();
+
+      while (!board.checkWin(Colour.WHITE) && !board.checkWin(Colour.BLACK)) {
+        List<Move> moves = new Player(board.getColourToMove(), board).getValidMoves();
+        if (moves.isEmpty()) {
+          break;
+        }
+        board.makeMove(moves.get(random.nextInt(moves.size())));
+        if (board.checkWin(Colour.WHITE) || board.checkWin(Colour.BLACK)) {
+          break;
+        }
+        noPositions++;
+
+        int result = resolve(board);
+        // Keep brute force small: blocked pawns don't add positions, runners do
+        long runners = PawnMasks.getPassedPawns(Colour.WHITE, board.getPawns(Colour.WHITE), board.getPawns(Colour.BLACK))
+            | PawnMasks.getPassedPawns(Colour.BLACK, board.getPawns(Colour.BLACK), board.getPawns(Colour.WHITE));
+        if (result == UNRESOLVED || Long.bitCount(runners) > 5) {
+          continue;
+        }
+
+        int expected = Tablebase.bruteForce(board, results);
+        if (result != expected) {
+          throw new IllegalStateException("Race resolved as " + result + " instead of " + expected + "\n" + board);
+        }
+        noResolved++;
+      }
+    }
+
+    System.out.println("Race resolver matched brute force in " + noResolved + " of " + noPositions
+        + " positions from random games");
+  }
+}
@@ -0,0 +1,63 @@
+package game.AI;
+
+import game.BitBoard;
+import game.PawnMasks;
+import game.misc.Colour;
+import game.misc.MoveList;
+import game.misc.PackedMove;
+
+import java.util.Random;
+
+/**
+ * How AIMcts plays out a game from a leaf of its tree
+ *
+ * RANDOM plays like AIRandomMover. GREEDY wins when it can, otherwise takes a pawn,
+ * otherwise pushes a passed pawn, otherwise plays a random move.
+ * Moves are packed (see PackedMove), so a rollout doesn't allocate a Move per move.
+ */
+public interface RolloutPolicy {
+  RolloutPolicy RANDOM = (board, moves, random) -> moves.get(random.nextInt(moves.size()));
+  RolloutPolicy GREEDY = RolloutPolicy::chooseGreedyMove;
+
+  // @moves are the valid moves on @board (never empty), returns one of them
+  int chooseMove(BitBoard board, MoveList moves, Random random);
+
+  private static int chooseGreedyMove(BitBoard board, MoveList moves, Random random) {
+    Colour colour = board.getColourToMove();
+    Colour opposite = (colour == Colour.WHITE) ? Colour.BLACK : Colour.WHITE;
+    int lastRow = board.getLastRow(colour);
+    long opponentPawns = board.getPawns(opposite);
+    int noCaptures = 0, noPassedPawnPushes = 0;
+
+    for (int i = 0; i < moves.size(); i++) {
+      int move = moves.get(i);
+      if (PackedMove.getSquareTo(move) / 8 == lastRow) {
+        return move;
+      }
+
+      if (PackedMove.isCapture(move)) {
+        noCaptures++;
+      } else if (PawnMasks.isPassed(colour, PackedMove.getSquareTo(move), opponentPawns)) {
+        noPassedPawnPushes++;
+      }
+    }
+
+    // Pick the n-th candidate, counting them again (so no list of candidates is needed)
+    if (noCaptures == 0 && noPassedPawnPushes == 0) {
+      return moves.get(random.nextInt(moves.size()));
+    }
+    boolean captures = noCaptures > 0;
+    int n = random.nextInt(captures ? noCaptures : noPassedPawnPushes);
+
+    for (int i = 0; i < moves.size(); i++) {
+      int move = moves.get(i);
+      boolean isCandidate = captures
+          ? PackedMove.isCapture(move)
+          : !PackedMove.isCapture(move) && PawnMasks.isPassed(colour, PackedMove.getSquareTo(move), opponentPawns);
+      if (isCandidate && n-- == 0) {
+        return move;
+      }
+    }
+    throw new IllegalStateException("Candidate move not found");
+  }
+}
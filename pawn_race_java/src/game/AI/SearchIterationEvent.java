@@ -0,0 +1,33 @@
+package game.AI;
+
+import jdk.jfr.*;
+
+// JFR event for one iteration of iterative deepening (of any search thread)
+@Name("pawnrace.SearchIteration")
+@Label("Search Iteration")
+@Category({"Pawn Race", "AI"})
+@Description("One depth of iterative deepening, aborted iterations included")
+@StackTrace(false)
+class SearchIterationEvent extends Event {
+  @Label("Position Hash")
+  @Description("Zobrist key of the root position")
+  long positionHash;
+
+  @Label("Depth")
+  int depth;
+
+  @Label("Nodes")
+  @Description("Nodes visited in this iteration")
+  long nodes;
+
+  @Label("Search Thread")
+  @Description("0 is the main thread")
+  int searcherId;
+
+  @Label("Completed")
+  @Description("False if a limit was reached first (the iteration is thrown away)")
+  boolean completed;
+
+  @Label("Evaluation")
+  int evaluation;
+}
@@ -0,0 +1,58 @@
+package game.AI;
+
+/**
+ * Budget for a single search (i.e. one call to chooseMove)
+ *
+ * The search deepens iteratively until one of the limits is reached,
+ * and plays the best move of the last iteration that completed.
+ * (AIMcts has no depth, and counts playouts as nodes.)
+ */
+public class SearchLimits {
+  public static final int MAX_DEPTH = 64;
+  public static final long NO_LIMIT = Long.MAX_VALUE;
+
+  private final int maxDepth;
+  private final long timeLimitMillis;
+  private final long nodeLimit;
+
+  public SearchLimits(int maxDepth, long timeLimitMillis, long nodeLimit) {
+    this.maxDepth = Math.min(maxDepth, MAX_DEPTH);
+    this.timeLimitMillis = timeLimitMillis;
+    this.nodeLimit = nodeLimit;
+  }
+
+  public static SearchLimits ofDepth(int maxDepth) {
+    return new SearchLimits(maxDepth, NO_LIMIT, NO_LIMIT);
+  }
+
+  public static SearchLimits ofTime(long timeLimitMillis) {
+    return new SearchLimits(MAX_DEPTH, timeLimitMillis, NO_LIMIT);
+  }
+
+  public static SearchLimits ofNodes(long nodeLimit) {
+    return new SearchLimits(MAX_DEPTH, NO_LIMIT, nodeLimit);
+  }
+
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  public long getTimeLimitMillis() {
+    return timeLimitMillis;
+  }
+
+  public long getNodeLimit() {
+    return nodeLimit;
+  }
+
+  public boolean hasTimeLimit() {
+    return timeLimitMillis != NO_LIMIT;
+  }
+
+  @Override
+  public String toString() {
+    return "SearchLimits(depth " + maxDepth
+        + ", time " + (hasTimeLimit() ? timeLimitMillis + "ms" : "-")
+        + ", nodes " + (nodeLimit == NO_LIMIT ? "-" : nodeLimit) + ")";
+  }
+}
@@ -0,0 +1,14 @@
+package game.AI;
+
+/**
+ * Follows a search while it runs (see AIMinimax.addSearchListener)
+ *
+ * Methods are called on the thread running chooseMove, so they should return quickly.
+ */
+public interface SearchListener {
+  // Each time an iteration of iterative deepening completes
+  default void onIteration(SearchStats stats, SearchStats.Iteration iteration) {}
+
+  // Once the search is done, @stats won't change after this
+  default void onSearchComplete(SearchStats stats) {}
+}
@@ -0,0 +1,248 @@
+package game.AI;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stats of a single search (i.e. one call to chooseMove)
+ *
+ * Filled in by the search as it goes, so totals are only final once the search is done
+ * (see SearchListener). Totals count every thread. Iterations only count the threads
+ * that finish them together (the main thread, and with ROOT_SPLIT the root split threads),
+ * since Lazy SMP helpers are still searching.
+ */
+public class SearchStats {
+  // A completed iteration of iterative deepening
+  public static class Iteration {
+    private final int depth;
+    private final long noNodes;
+    private final long elapsedNanos;
+    private final int evaluation;
+    private final String bestMove;
+
+    Iteration(int depth, long noNodes, long elapsedNanos, int evaluation, String bestMove) {
+      this.depth = depth;
+      this.noNodes = noNodes;
+      this.elapsedNanos = elapsedNanos;
+      this.evaluation = evaluation;
+      this.bestMove = bestMove;
+    }
+
+    public int getDepth() {
+      return depth;
+    }
+
+    // Nodes visited in this iteration only
+    public long getNoNodes() {
+      return noNodes;
+    }
+
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+
+    public int getEvaluation() {
+      return evaluation;
+    }
+
+    public String getBestMove() {
+      return bestMove;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("depth %d: %d nodes, %.1fms, evaluation %d, best move %s",
+          depth, noNodes, elapsedNanos / 1e6, evaluation, bestMove);
+    }
+  }
+
+  private final int numThreads;
+  private final ParallelMode parallelMode;
+  private final List<Iteration> iterations = new ArrayList<>();
+
+  private long noNodes;
+  // Static evaluations at the leaves of the main search, and in quiescence search (at most 1 per node)
+  private long noLeafEvaluations;
+  // Nodes whose moves were searched (i.e. not leaves or transposition table cutoffs)
+  private long noInteriorNodes;
+  private long noBetaCutoffs;
+  // Nodes visited by quiescence search (included in @noNodes)
+  private long noQuiescenceNodes;
+  private long noQuiescenceEvaluations;
+  // Beta cutoffs in quiescence search (not in @noBetaCutoffs, quiescence nodes aren't interior nodes)
+  private long noQuiescenceCutoffs;
+  private long noTtProbes;
+  private long noTtHits;
+  // Positions found in the tablebase (see AIMinimax.setTablebase), or resolved by RaceResolver
+  private long noTablebaseHits;
+  private long noResolvedRaces;
+  private double firstMoveCutoffRate;
+  private long elapsedNanos;
+  private int depthReached;
+  private int evaluation;
+
+  SearchStats(int numThreads, ParallelMode parallelMode) {
+    this.numThreads = numThreads;
+    this.parallelMode = parallelMode;
+  }
+
+  void addIteration(Iteration iteration) {
+    iterations.add(iteration);
+    depthReached = iteration.getDepth();
+    evaluation = iteration.getEvaluation();
+  }
+
+  void setTotals(long noNodes, long noLeafEvaluations, long noInteriorNodes, long noBetaCutoffs,
+                 long noQuiescenceNodes, long noQuiescenceEvaluations, long noQuiescenceCutoffs) {
+    this.noNodes = noNodes;
+    this.noLeafEvaluations = noLeafEvaluations;
+    this.noInteriorNodes = noInteriorNodes;
+    this.noBetaCutoffs = noBetaCutoffs;
+    this.noQuiescenceNodes = noQuiescenceNodes;
+    this.noQuiescenceEvaluations = noQuiescenceEvaluations;
+    this.noQuiescenceCutoffs = noQuiescenceCutoffs;
+  }
+
+  void setTranspositionTableStats(long noTtProbes, long noTtHits) {
+    this.noTtProbes = noTtProbes;
+    this.noTtHits = noTtHits;
+  }
+
+  void setExactResults(long noTablebaseHits, long noResolvedRaces) {
+    this.noTablebaseHits = noTablebaseHits;
+    this.noResolvedRaces = noResolvedRaces;
+  }
+
+  void setFirstMoveCutoffRate(double firstMoveCutoffRate) {
+    this.firstMoveCutoffRate = firstMoveCutoffRate;
+  }
+
+  void setElapsedNanos(long elapsedNanos) {
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  public int getNumThreads() {
+    return numThreads;
+  }
+
+  public ParallelMode getParallelMode() {
+    return parallelMode;
+  }
+
+  public List<Iteration> getIterations() {
+    return Collections.unmodifiableList(iterations);
+  }
+
+  public long getNoNodes() {
+    return noNodes;
+  }
+
+  public long getNoLeafEvaluations() {
+    return noLeafEvaluations;
+  }
+
+  public long getNoQuiescenceNodes() {
+    return noQuiescenceNodes;
+  }
+
+  public long getNoQuiescenceEvaluations() {
+    return noQuiescenceEvaluations;
+  }
+
+  public long getNoBetaCutoffs() {
+    return noBetaCutoffs;
+  }
+
+  public long getNoQuiescenceCutoffs() {
+    return noQuiescenceCutoffs;
+  }
+
+  // Fraction of interior nodes where a move caused a beta cutoff
+  public double getBetaCutoffRatio() {
+    return (noInteriorNodes == 0) ? 0 : (double) noBetaCutoffs / noInteriorNodes;
+  }
+
+  // Fraction of beta cutoffs caused by the first move searched (main thread only)
+  public double getFirstMoveCutoffRate() {
+    return firstMoveCutoffRate;
+  }
+
+  public long getNoTtProbes() {
+    return noTtProbes;
+  }
+
+  public long getNoTtHits() {
+    return noTtHits;
+  }
+
+  public long getNoTablebaseHits() {
+    return noTablebaseHits;
+  }
+
+  public long getNoResolvedRaces() {
+    return noResolvedRaces;
+  }
+
+  public double getTtHitRate() {
+    return (noTtProbes == 0) ? 0 : (double) noTtHits / noTtProbes;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  public long getNodesPerSecond() {
+    return noNodes * 1_000_000_000L / Math.max(1, elapsedNanos);
+  }
+
+  public int getDepthReached() {
+    return depthReached;
+  }
+
+  // Evaluation of the last completed iteration (positive is good for white)
+  public int getEvaluation() {
+    return evaluation;
+  }
+
+  /**
+   * Effective branching factor
+   * How many times more nodes the last iteration needed than the one before it
+   * (or the depth-th root of the nodes, with a single iteration)
+   */
+  public double getEffectiveBranchingFactor() {
+    int noIterations = iterations.size();
+
+    if (noIterations == 0) {
+      return 0;
+    }
+    if (noIterations == 1) {
+      Iteration iteration = iterations.get(0);
+      return Math.pow(iteration.getNoNodes(), 1.0 / iteration.getDepth());
+    }
+
+    long previousNoNodes = iterations.get(noIterations - 2).getNoNodes();
+    return (double) iterations.get(noIterations - 1).getNoNodes() / Math.max(1, previousNoNodes);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+
+    sb.append(String.format("Depth reached: %d, evaluation %d%n", depthReached, evaluation));
+    sb.append(String.format("Nodes: %d (%d quiescence), %.1fms, %d nodes/s (%d threads, %s)%n",
+        noNodes, noQuiescenceNodes, elapsedNanos / 1e6, getNodesPerSecond(), numThreads, parallelMode));
+    sb.append(String.format("Evaluations: %d at leaves, %d in quiescence%n", noLeafEvaluations, noQuiescenceEvaluations));
+    sb.append(String.format("Effective branching factor: %.2f, beta cutoff ratio %.1f%%, "
+            + "first move cutoff rate %.1f%%, quiescence cutoffs %d%n",
+        getEffectiveBranchingFactor(), getBetaCutoffRatio() * 100, firstMoveCutoffRate * 100, noQuiescenceCutoffs));
+    sb.append(String.format("TT: %d probes, hit rate %.1f%%, tablebase hits %d, resolved races %d%n",
+        noTtProbes, getTtHitRate() * 100, noTablebaseHits, noResolvedRaces));
+
+    for (Iteration iteration : iterations) {
+      sb.append("  ").append(iteration).append("\n");
+    }
+
+    return sb.toString();
+  }
+}
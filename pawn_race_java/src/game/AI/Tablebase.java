@@ -0,0 +1,590 @@
+package game.AI;
+
+import game.BitBoard;
+import game.Board;
+import game.Game;
+import game.Perft;
+import game.Player;
+import game.misc.Colour;
+import game.misc.Move;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Pawn-only endgame tablebases
+ *
+ * For every position with 1 to @maxPawns pawns per side (and no pawn on its last row),
+ * stores the result for the side to move, with the distance in plies:
+ *   n > 0: wins in n plies, n < 0: loses in -n plies, 0: draw
+ * Positions where en passant is possible are not stored (probing them gives NOT_FOUND).
+ *
+ * Generation (retrograde analysis)
+ * Pawns only move forward, so a position can never come up again: positions are solved
+ * fewest pawns first, then most advanced pawns first, and every move leads to a position
+ * that is already solved. The only exception is a double step that gives an en passant right,
+ * that position is solved on the spot from its own moves.
+ * So there is no need to iterate until nothing changes, and all positions with the same
+ * pawns advanced by the same amount (a level) are solved in parallel.
+ *
+ * Files
+ * One file per number of white and black pawns (e.g. pawns_2v1.tb), 1 byte per position,
+ * indexed by the set of white squares, the set of black squares and the side to move.
+ * Files are memory-mapped, so probes only read the pages they need.
+ * The biggest table (3v3) is ~600MB.
+ *
+ * Usage: Tablebase [directory maxPawns [threads]] generates the tables,
+ * with no arguments the tables are checked against a brute force search
+ */
+public class Tablebase {
+  public static final int NOT_FOUND = Byte.MIN_VALUE;
+  public static final int MAX_PAWNS = 3;
+
+  // Pawns can only be on rows 2 to 7 (a pawn on its last row has already won)
+  private static final int FIRST_SQUARE = 8;
+  private static final int NO_SQUARES = 48;
+  private static final long PAWN_SQUARES = ~(BitBoard.FIRST_ROW | BitBoard.LAST_ROW);
+  // BINOMIALS[n][k] = n choose k
+  private static final int[][] BINOMIALS = new int[NO_SQUARES + 1][MAX_PAWNS + 1];
+
+  static {
+    for (int n = 0; n <= NO_SQUARES; n++) {
+      BINOMIALS[n][0] = 1;
+      for (int k = 1; k <= MAX_PAWNS; k++) {
+        BINOMIALS[n][k] = (n == 0) ? 0 : BINOMIALS[n - 1][k - 1] + BINOMIALS[n - 1][k];
+      }
+    }
+  }
+
+  private final int maxPawns;
+  // Indexed by [no. of white pawns][no. of black pawns], null if either is 0
+  private final MappedByteBuffer[][] tables;
+
+  private Tablebase(int maxPawns) {
+    this.maxPawns = maxPawns;
+    this.tables = new MappedByteBuffer[maxPawns + 1][maxPawns + 1];
+  }
+
+  // Opens the tables in @directory (which should have been generated already)
+  public static Tablebase open(Path directory, int maxPawns) throws IOException {
+    Tablebase tablebase = new Tablebase(checkMaxPawns(maxPawns));
+
+    for (int noWhite = 1; noWhite <= maxPawns; noWhite++) {
+      for (int noBlack = 1; noBlack <= maxPawns; noBlack++) {
+        Path file = directory.resolve(getFileName(noWhite, noBlack));
+        if (!Files.exists(file)) {
+          throw new IllegalArgumentException("Missing tablebase file " + file);
+        }
+        tablebase.tables[noWhite][noBlack] = map(file, FileChannel.MapMode.READ_ONLY, getTableSize(noWhite, noBlack));
+      }
+    }
+
+    return tablebase;
+  }
+
+  /**
+   * Generates the tables missing from @directory (existing ones are reused), using @numThreads threads
+   * Tables are written to a temporary file first, so a generation that is cut short leaves no broken tables.
+   */
+  public static Tablebase generate(Path directory, int maxPawns, int numThreads) throws IOException {
+    Tablebase tablebase = new Tablebase(checkMaxPawns(maxPawns));
+    Files.createDirectories(directory);
+    ForkJoinPool pool = new ForkJoinPool(numThreads);
+
+    try {
+      // Captures lead to tables with fewer pawns, so those are done first
+      for (int noPawns = 2; noPawns <= 2 * maxPawns; noPawns++) {
+        for (int noWhite = 1; noWhite <= maxPawns; noWhite++) {
+          int noBlack = noPawns - noWhite;
+          if (noBlack < 1 || noBlack > maxPawns) {
+            continue;
+          }
+
+          Path file = directory.resolve(getFileName(noWhite, noBlack));
+          long size = getTableSize(noWhite, noBlack);
+          if (Files.exists(file)) {
+            tablebase.tables[noWhite][noBlack] = map(file, FileChannel.MapMode.READ_ONLY, size);
+            continue;
+          }
+
+          Path tempFile = directory.resolve(getFileName(noWhite, noBlack) + ".tmp");
+          Files.deleteIfExists(tempFile);
+          MappedByteBuffer table = map(tempFile, FileChannel.MapMode.READ_WRITE, size);
+          tablebase.tables[noWhite][noBlack] = table;
+          tablebase.generateTable(noWhite, noBlack, pool);
+          table.force();
+          Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    return tablebase;
+  }
+
+  private static int checkMaxPawns(int maxPawns) {
+    if (maxPawns < 1 || maxPawns > MAX_PAWNS) {
+      throw new IllegalArgumentException("Tablebases are for 1 to " + MAX_PAWNS + " pawns per side");
+    }
+    return maxPawns;
+  }
+
+  private static String getFileName(int noWhite, int noBlack) {
+    return "pawns_" + noWhite + "v" + noBlack + ".tb";
+  }
+
+  private static long getTableSize(int noWhite, int noBlack) {
+    return 2L * BINOMIALS[NO_SQUARES][noWhite] * BINOMIALS[NO_SQUARES][noBlack];
+  }
+
+  private static MappedByteBuffer map(Path file, FileChannel.MapMode mode, long size) throws IOException {
+    StandardOpenOption[] options = (mode == FileChannel.MapMode.READ_ONLY)
+        ? new StandardOpenOption[] {StandardOpenOption.READ}
+        : new StandardOpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE};
+
+    // The mapping stays valid once the channel is closed
+    try (FileChannel channel = FileChannel.open(file, options)) {
+      if (mode == FileChannel.MapMode.READ_ONLY && channel.size() != size) {
+        throw new IllegalArgumentException("Tablebase file " + file + " has the wrong size");
+      }
+      return channel.map(mode, 0, size);
+    }
+  }
+
+  public int getMaxPawns() {
+    return maxPawns;
+  }
+
+  public long getSizeInBytes() {
+    long size = 0;
+    for (MappedByteBuffer[] tablesOfWhite : tables) {
+      for (MappedByteBuffer table : tablesOfWhite) {
+        size += (table == null) ? 0 : table.capacity();
+      }
+    }
+    return size;
+  }
+
+  // -------------------- Indexing --------------------
+  // Rank of a set of squares among all sets of the same size (combinatorial number system)
+  private static int rank(long pawns) {
+    int rank = 0;
+    int i = 1;
+
+    for (long remaining = pawns; remaining != 0; remaining &= remaining - 1) {
+      rank += BINOMIALS[Long.numberOfTrailingZeros(remaining) - FIRST_SQUARE][i];
+      i++;
+    }
+
+    return rank;
+  }
+
+  // Set of @noPawns squares with rank @rank
+  private static long unrank(int rank, int noPawns) {
+    long pawns = 0;
+
+    for (int i = noPawns; i >= 1; i--) {
+      int square = i - 1;
+      while (BINOMIALS[square + 1][i] <= rank) {
+        square++;
+      }
+      rank -= BINOMIALS[square][i];
+      pawns |= 1L << (square + FIRST_SQUARE);
+    }
+
+    return pawns;
+  }
+
+  private static int getIndex(int whiteRank, int blackRank, int noBlack, boolean whiteToMove) {
+    return 2 * (whiteRank * BINOMIALS[NO_SQUARES][noBlack] + blackRank) + (whiteToMove ? 0 : 1);
+  }
+
+  // Total number of rows the pawns of @colour have moved
+  private static int getLevel(long pawns, Colour colour) {
+    int level = 0;
+    for (long remaining = pawns; remaining != 0; remaining &= remaining - 1) {
+      int row = Long.numberOfTrailingZeros(remaining) / 8;
+      level += (colour == Colour.WHITE) ? row - 1 : 6 - row;
+    }
+    return level;
+  }
+  // -------------------- End of indexing --------------------
+
+  /**
+   * Result for the side to move, or NOT_FOUND if the position is not in the tables
+   * (too many pawns, the game is over, or en passant is possible)
+   */
+  public int probe(BitBoard board) {
+    if (board.canTakeEnPassant()) {
+      return NOT_FOUND;
+    }
+
+    return probe(board.getPawns(Colour.WHITE), board.getPawns(Colour.BLACK),
+        board.getColourToMove() == Colour.WHITE);
+  }
+
+  private int probe(long whitePawns, long blackPawns, boolean whiteToMove) {
+    int noWhite = Long.bitCount(whitePawns);
+    int noBlack = Long.bitCount(blackPawns);
+
+    if (noWhite == 0 || noBlack == 0 || noWhite > maxPawns || noBlack > maxPawns
+        || ((whitePawns | blackPawns) & ~PAWN_SQUARES) != 0) {
+      return NOT_FOUND;
+    }
+
+    int index = getIndex(rank(whitePawns), rank(blackPawns), noBlack, whiteToMove);
+    return tables[noWhite][noBlack].get(index);
+  }
+
+  // -------------------- Generation --------------------
+  private void generateTable(int noWhite, int noBlack, ForkJoinPool pool) {
+    MappedByteBuffer table = tables[noWhite][noBlack];
+    int noWhiteRanks = BINOMIALS[NO_SQUARES][noWhite];
+    int noBlackRanks = BINOMIALS[NO_SQUARES][noBlack];
+
+    long[] whiteSets = new long[noWhiteRanks];
+    int[] whiteLevels = new int[noWhiteRanks];
+    for (int rank = 0; rank < noWhiteRanks; rank++) {
+      whiteSets[rank] = unrank(rank, noWhite);
+      whiteLevels[rank] = getLevel(whiteSets[rank], Colour.WHITE);
+    }
+
+    // Black sets grouped by level, so each level only visits its own positions
+    int maxBlackLevel = 5 * noBlack;
+    List<List<Integer>> blackRanksByLevel = new ArrayList<>();
+    for (int level = 0; level <= maxBlackLevel; level++) {
+      blackRanksByLevel.add(new ArrayList<>());
+    }
+    long[] blackSets = new long[noBlackRanks];
+    for (int rank = 0; rank < noBlackRanks; rank++) {
+      blackSets[rank] = unrank(rank, noBlack);
+      blackRanksByLevel.get(getLevel(blackSets[rank], Colour.BLACK)).add(rank);
+    }
+
+    // Moves within the table go up at least one level, so go from the top level down
+    for (int level = 5 * noWhite + maxBlackLevel; level >= 0; level--) {
+      int currentLevel = level;
+
+      pool.submit(() -> IntStream.range(0, noWhiteRanks).parallel().forEach(whiteRank -> {
+        int blackLevel = currentLevel - whiteLevels[whiteRank];
+        if (blackLevel < 0 || blackLevel > maxBlackLevel) {
+          return;
+        }
+
+        long white = whiteSets[whiteRank];
+        for (int blackRank : blackRanksByLevel.get(blackLevel)) {
+          long black = blackSets[blackRank];
+          if ((white & black) != 0) {
+            // Not a position, left as 0
+            continue;
+          }
+
+          table.put(getIndex(whiteRank, blackRank, noBlack, true), (byte) solve(white, black, true, -1));
+          table.put(getIndex(whiteRank, blackRank, noBlack, false), (byte) solve(white, black, false, -1));
+        }
+      })).join();
+    }
+  }
+
+  /**
+   * Result for the side to move, from the results after each of its moves
+   * @enPassantSquare is the square a pawn can take en passant on (-1 if there is none)
+   */
+  private int solve(long white, long black, boolean whiteToMove, int enPassantSquare) {
+    long own = whiteToMove ? white : black;
+    long opponent = whiteToMove ? black : white;
+    long empty = ~(white | black);
+    int forward = whiteToMove ? 8 : -8;
+    int startRow = whiteToMove ? 1 : 6;
+    long lastRow = whiteToMove ? BitBoard.LAST_ROW : BitBoard.FIRST_ROW;
+
+    // Fastest win, slowest loss, and whether a draw is possible
+    int fastestWin = Integer.MAX_VALUE;
+    int slowestLoss = 0;
+    boolean canDraw = false;
+    boolean hasMoves = false;
+
+    for (long remaining = own; remaining != 0; remaining &= remaining - 1) {
+      int from = Long.numberOfTrailingZeros(remaining);
+      int column = from % 8;
+      // Squares the pawn can move to: push, double step, 2 captures, en passant
+      // (a mask rather than a list, so nothing is allocated per pawn)
+      long targets = 0;
+
+      int to = from + forward;
+      if ((empty & (1L << to)) != 0) {
+        targets |= 1L << to;
+
+        int doubleStep = to + forward;
+        if (from / 8 == startRow && (empty & (1L << doubleStep)) != 0) {
+          targets |= 1L << doubleStep;
+        }
+      }
+      for (int side = -1; side <= 1; side += 2) {
+        if (column + side < 0 || column + side > 7) {
+          continue;
+        }
+        int captureSquare = to + side;
+        if ((opponent & (1L << captureSquare)) != 0 || captureSquare == enPassantSquare) {
+          targets |= 1L << captureSquare;
+        }
+      }
+
+      for (; targets != 0; targets &= targets - 1) {
+        int target = Long.numberOfTrailingZeros(targets);
+        // Moves to another file take the pawn on the target square, or the one behind it (en passant)
+        int captured = (target % 8 == column) ? -1
+            : ((opponent & (1L << target)) != 0) ? target : target - forward;
+
+        hasMoves = true;
+        long newOwn = (own & ~(1L << from)) | (1L << target);
+        long newOpponent = (captured == -1) ? opponent : opponent & ~(1L << captured);
+
+        if ((newOwn & lastRow) != 0 || newOpponent == 0) {
+          // Can't win any faster
+          return 1;
+        }
+
+        long newWhite = whiteToMove ? newOwn : newOpponent;
+        long newBlack = whiteToMove ? newOpponent : newOwn;
+
+        // After a double step, the opponent may be able to take en passant
+        int newEnPassantSquare = -1;
+        if (Math.abs(target - from) == 16) {
+          long neighbours = (((1L << target) & ~BitBoard.FILE_A) >>> 1)
+              | (((1L << target) & ~BitBoard.FILE_H) << 1);
+          if ((neighbours & opponent) != 0) {
+            newEnPassantSquare = from + forward;
+          }
+        }
+
+        int result = (newEnPassantSquare == -1)
+            ? probe(newWhite, newBlack, !whiteToMove)
+            : solve(newWhite, newBlack, !whiteToMove, newEnPassantSquare);
+        assert result != NOT_FOUND;
+
+        if (result < 0) {
+          fastestWin = Math.min(fastestWin, 1 - result);
+        } else if (result == 0) {
+          canDraw = true;
+        } else {
+          slowestLoss = Math.max(slowestLoss, result + 1);
+        }
+      }
+    }
+
+    if (fastestWin != Integer.MAX_VALUE) {
+      return fastestWin;
+    }
+    // No moves is a draw
+    if (canDraw || !hasMoves) {
+      return 0;
+    }
+    return -slowestLoss;
+  }
+  // -------------------- End of generation --------------------
+
+  // Position string (see Perft) of the pawns, for testing
+  private static String toPosition(long white, long black, boolean whiteToMove) {
+    StringBuilder sb = new StringBuilder();
+
+    for (int row = 7; row >= 0; row--) {
+      int noEmpty = 0;
+      for (int column = 0; column < 8; column++) {
+        long bit = 1L << (row * 8 + column);
+        char c = ((white & bit) != 0) ? 'P' : ((black & bit) != 0) ? 'p' : 0;
+        if (c == 0) {
+          noEmpty++;
+          continue;
+        }
+        if (noEmpty > 0) {
+          sb.append(noEmpty);
+          noEmpty = 0;
+        }
+        sb.append(c);
+      }
+      if (noEmpty > 0) {
+        sb.append(noEmpty);
+      }
+      if (row > 0) {
+        sb.append('/');
+      }
+    }
+
+    return sb.append(whiteToMove ? " w -" : " b -").toString();
+  }
+
+  // Brute force result (same encoding as the tables), memoised by Zobrist key
+  // (also used to test RaceResolver)
+  static int bruteForce(Board board, Map<Long, Integer> results) {
+    Integer known = results.get(board.getZobristKey());
+    if (known != null) {
+      return known;
+    }
+
+    int fastestWin = Integer.MAX_VALUE;
+    int slowestLoss = 0;
+    boolean canDraw = false;
+    Colour colourToMove = board.getColourToMove();
+    List<Move> moves = new Player(colourToMove, board).getValidMoves();
+
+    for (Move move : moves) {
+      board.makeMove(move);
+      if (board.checkWin(colourToMove)) {
+        board.unmakeMove();
+        fastestWin = 1;
+        continue;
+      }
+      int result = bruteForce(board, results);
+      board.unmakeMove();
+
+      if (result < 0) {
+        fastestWin = Math.min(fastestWin, 1 - result);
+      } else if (result == 0) {
+        canDraw = true;
+      } else {
+        slowestLoss = Math.max(slowestLoss, result + 1);
+      }
+    }
+
+    int result = (fastestWin != Integer.MAX_VALUE) ? fastestWin : (canDraw || moves.isEmpty()) ? 0 : -slowestLoss;
+    results.put(board.getZobristKey(), result);
+    return result;
+  }
+
+  private static void deleteDirectory(Path directory) throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length >= 2) {
+      int numThreads = (args.length >= 3) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+      long start = System.nanoTime();
+      Tablebase tablebase = generate(Path.of(args[0]), Integer.parseInt(args[1]), numThreads);
+      System.out.printf("Tablebases up to %d pawns per side: %d bytes, %dms%n",
+          tablebase.getMaxPawns(), tablebase.getSizeInBytes(), (System.nanoTime() - start) / 1_000_000);
+      return;
+    }
+
+    // Testing
+    Path directory = Files.createTempDirectory("tablebase");
+    try {
+      long start = System.nanoTime();
+      Tablebase tablebase = generate(directory, MAX_PAWNS, Runtime.getRuntime().availableProcessors());
+      System.out.printf("Generated tables up to %d pawns per side (%d bytes) in %dms%n",
+          MAX_PAWNS, tablebase.getSizeInBytes(), (System.nanoTime() - start) / 1_000_000);
+
+      // Indexing: rank and unrank are inverses
+      for (int noPawns = 1; noPawns <= MAX_PAWNS; noPawns++) {
+        for (int rank = 0; rank < BINOMIALS[NO_SQUARES][noPawns]; rank++) {
+          if (rank(unrank(rank, noPawns)) != rank) {
+            throw new IllegalStateException("Rank " + rank + " of " + noPawns + " pawns does not round trip");
+          }
+        }
+      }
+
+      // Opening the generated files gives the same results
+      Tablebase opened = open(directory, MAX_PAWNS);
+
+      // Random positions against a brute force search of the whole game tree
+      // (the last ones all 3 against 3, the biggest table)
+      Random random = new Random(0);
+      Map<Long, Integer> results = new HashMap<>();
+      int noWins = 0, noDraws = 0, noLosses = 0, no3v3 = 0;
+
+      for (int i = 0; i < 2500; i++) {
+        long white = 0, black = 0;
+        int noWhite = (i < 2000) ? 1 + random.nextInt(MAX_PAWNS) : MAX_PAWNS;
+        int noBlack = (i < 2000) ? 1 + random.nextInt(MAX_PAWNS) : MAX_PAWNS;
+        while (Long.bitCount(white) < noWhite) {
+          white |= 1L << (FIRST_SQUARE + random.nextInt(NO_SQUARES));
+        }
+        while (Long.bitCount(black) < noBlack) {
+          black |= 1L << (FIRST_SQUARE + random.nextInt(NO_SQUARES));
+          black &= ~white;
+        }
+        boolean whiteToMove = random.nextBoolean();
+
+        String position = toPosition(white, black, whiteToMove);
+        BitBoard board;
+        try {
+          board = Perft.parsePosition(position);
+        } catch (IllegalArgumentException e) {
+          // e.g. black to move with no white pawn that could have moved last
+          continue;
+        }
+
+        int expected = bruteForce(board, results);
+        int actual = tablebase.probe(board);
+        if (actual != expected || opened.probe(board) != expected) {
+          throw new IllegalStateException("Tablebase gives " + actual + " instead of " + expected
+              + " for " + position);
+        }
+
+        if (noWhite == MAX_PAWNS && noBlack == MAX_PAWNS) {
+          no3v3++;
+        }
+        if (expected > 0) {
+          noWins++;
+        } else if (expected == 0) {
+          noDraws++;
+        } else {
+          noLosses++;
+        }
+      }
+      System.out.println("Tablebase matched brute force in " + (noWins + noDraws + noLosses)
+          + " positions (" + noWins + " wins, " + noDraws + " draws, " + noLosses + " losses, "
+          + no3v3 + " of them 3 against 3)");
+
+      // Search with the tablebase probes instead of searching the ending
+      Game game = new Game(Perft.parsePosition("8/8/1p4p1/8/8/2P2P2/8/8 w -"));
+      int expected = tablebase.probe((BitBoard) game.getBoard());
+      AIMinimax withTablebase = new AIMinimax(game, Colour.WHITE, SearchLimits.ofDepth(8), 4, 0);
+      withTablebase.setTablebase(tablebase);
+      withTablebase.chooseMove();
+      AIMinimax withoutTablebase = new AIMinimax(game, Colour.WHITE, SearchLimits.ofDepth(8), 4, 0);
+      withoutTablebase.chooseMove();
+
+      int expectedEvaluation = (expected > 0) ? AIMinimax.WIN_SCORE - expected : -AIMinimax.WIN_SCORE - expected;
+      if (withTablebase.getSearchStats().getEvaluation() != expectedEvaluation) {
+        throw new IllegalStateException("Expected evaluation " + expectedEvaluation + " from the tablebase, got "
+            + withTablebase.getSearchStats().getEvaluation());
+      }
+      System.out.println("Tablebase result for white: " + expected + ", chosen at the root in "
+          + withTablebase.getSearchStats().getNoNodes() + " nodes (" + withoutTablebase.getSearchStats().getNoNodes()
+          + " nodes and evaluation " + withoutTablebase.getSearchStats().getEvaluation() + " without the tablebase)");
+
+      // 4 pawns against 3 is not in the tables, but positions after a capture are
+      Game captureGame = new Game(Perft.parsePosition("8/8/1p2p1p1/8/2P5/3P1P1P/8/8 w -"));
+      AIMinimax treeProbes = new AIMinimax(captureGame, Colour.WHITE, SearchLimits.ofDepth(6), 4, 0);
+      treeProbes.setTablebase(tablebase);
+      treeProbes.chooseMove();
+      if (treeProbes.getSearchStats().getNoTablebaseHits() == 0) {
+        throw new IllegalStateException("Expected the search to probe the tablebase after captures");
+      }
+      System.out.println("4 pawns against 3: " + treeProbes.getSearchStats().getNoTablebaseHits()
+          + " tablebase hits in " + treeProbes.getSearchStats().getNoNodes() + " nodes");
+    } finally {
+      deleteDirectory(directory);
+    }
+  }
+}
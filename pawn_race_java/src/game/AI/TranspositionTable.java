@@ -0,0 +1,180 @@
+package game.AI;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transposition table
+ *
+ * Fixed-size table of search results, indexed by Zobrist key.
+ * Entries are kept in two parallel long arrays (key, data), so the table does not allocate
+ * after construction, and its size is bounded by @sizeInMB.
+ *
+ * Each entry packs depth, score, bound type, age and best move into a single long.
+ * Replacement is depth-preferred: an entry is only replaced by a shallower result
+ * if it comes from an earlier search (aging), so results survive from one move to the next.
+ *
+ * The table is shared by the search threads without locking.
+ * Each slot stores (key ^ data) instead of the key, so an entry torn by two threads writing
+ * the same slot at once fails the key check on probe, and is just treated as a miss.
+ */
+public class TranspositionTable {
+  // Bound types (0 is reserved, so data == 0 means "no entry")
+  public static final int EXACT = 1;
+  public static final int LOWER_BOUND = 2;
+  public static final int UPPER_BOUND = 3;
+
+  // Best moves are stored as (from square, to square), 0 means no move
+  public static final int NO_MOVE = 0;
+
+  private static final int BYTES_PER_ENTRY = 16;
+
+  // Layout of data: score (32 bits) | depth (8) | bound (2) | age (8) | best move (12)
+  private static final int DEPTH_SHIFT = 32;
+  private static final int BOUND_SHIFT = 40;
+  private static final int AGE_SHIFT = 42;
+  private static final int MOVE_SHIFT = 50;
+
+  private final long[] keys;
+  private final long[] data;
+  private final int mask;
+  private int age = 0;
+
+  // Stats (updated by every search thread)
+  private final LongAdder noProbes = new LongAdder();
+  private final LongAdder noHits = new LongAdder();
+  private final LongAdder noFilled = new LongAdder();
+
+  public TranspositionTable(int sizeInMB) {
+    // Round down to a power of 2 so indexing is a mask
+    long noEntries = Long.highestOneBit(Math.max(1, (long) sizeInMB * 1024 * 1024 / BYTES_PER_ENTRY));
+    keys = new long[(int) noEntries];
+    data = new long[(int) noEntries];
+    mask = (int) noEntries - 1;
+  }
+
+  public int getCapacity() {
+    return keys.length;
+  }
+
+  // Call once per search, so entries from previous searches can be told apart
+  public void newSearch() {
+    age = (age + 1) & 0xFF;
+  }
+
+  private int index(long key) {
+    return (int) (key ^ (key >>> 32)) & mask;
+  }
+
+  // Returns packed entry data for @key, or 0 if there is none
+  public long probe(long key) {
+    noProbes.increment();
+    int i = index(key);
+    // Read once, another thread could be writing the slot
+    long entry = data[i];
+
+    if (entry != 0 && (keys[i] ^ entry) == key) {
+      noHits.increment();
+      return entry;
+    }
+
+    return 0;
+  }
+
+  public void store(long key, int depth, int score, int bound, int bestMove) {
+    int i = index(key);
+    long entry = data[i];
+    boolean sameKey = entry != 0 && (keys[i] ^ entry) == key;
+
+    boolean replace = entry == 0
+        || sameKey
+        || getAge(entry) != age
+        || depth >= getDepth(entry);
+
+    if (!replace) {
+      return;
+    }
+
+    if (entry == 0) {
+      noFilled.increment();
+    }
+
+    // Keep the old best move if we don't have one for the same position
+    if (bestMove == NO_MOVE && sameKey) {
+      bestMove = getBestMove(entry);
+    }
+
+    long newEntry = (score & 0xFFFFFFFFL)
+        | ((long) depth << DEPTH_SHIFT)
+        | ((long) bound << BOUND_SHIFT)
+        | ((long) age << AGE_SHIFT)
+        | ((long) bestMove << MOVE_SHIFT);
+    keys[i] = key ^ newEntry;
+    data[i] = newEntry;
+  }
+
+  public void clear() {
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = 0;
+      data[i] = 0;
+    }
+    noFilled.reset();
+  }
+
+  // -------------------- Decoding packed entries --------------------
+  public static int getScore(long entry) {
+    return (int) entry;
+  }
+
+  public static int getDepth(long entry) {
+    return (int) (entry >>> DEPTH_SHIFT) & 0xFF;
+  }
+
+  public static int getBound(long entry) {
+    return (int) (entry >>> BOUND_SHIFT) & 0x3;
+  }
+
+  private static int getAge(long entry) {
+    return (int) (entry >>> AGE_SHIFT) & 0xFF;
+  }
+
+  public static int getBestMove(long entry) {
+    return (int) (entry >>> MOVE_SHIFT) & 0xFFF;
+  }
+
+  public static int encodeMove(int squareFrom, int squareTo) {
+    return (squareFrom << 6) | squareTo;
+  }
+  // -------------------- End of decoding --------------------
+
+  // -------------------- Stats --------------------
+  public long getNoProbes() {
+    return noProbes.sum();
+  }
+
+  public long getNoHits() {
+    return noHits.sum();
+  }
+
+  public double getHitRate() {
+    long probes = getNoProbes();
+    return (probes == 0) ? 0 : (double) getNoHits() / probes;
+  }
+
+  // Fraction of entries in use
+  // (approximate with several threads, two of them can fill the same slot)
+  public double getFill() {
+    return Math.min(1, (double) noFilled.sum() / keys.length);
+  }
+
+  public void resetStats() {
+    noProbes.reset();
+    noHits.reset();
+  }
+  // -------------------- End of stats --------------------
+
+  @Override
+  public String toString() {
+    return String.format("TT: %d entries, hit rate %.1f%%, fill %.1f%%",
+        keys.length, getHitRate() * 100, getFill() * 100);
+  }
+}
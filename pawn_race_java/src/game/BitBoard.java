@@ -0,0 +1,367 @@
+package game;
+
+import game.misc.Colour;
+import game.misc.Move;
+import game.misc.MoveList;
+import game.misc.MoveType;
+import game.misc.PackedMove;
+import game.misc.Position;
+import game.pieces.Pawn;
+import game.pieces.Piece;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Board backed by bitboards
+ *
+ * Each colour's pawns are kept as a 64-bit occupancy mask (bit i is square i, see @square),
+ * so occupancy, win and piece count queries are single bit operations.
+ * The list of pieces from Board is still kept up to date, so the Piece / Position views
+ * (used by the GUI and Player) keep working.
+ *
+ * In Pawn Race every piece is a pawn, so this board only supports pawns.
+ */
+public class BitBoard extends Board {
+  public static final long FIRST_ROW = 0xFFL;
+  public static final long LAST_ROW = 0xFFL << 56;
+  public static final long FILE_A = 0x0101010101010101L;
+  public static final long FILE_H = FILE_A << 7;
+
+  // Differential test mode: every query is checked against the list-based implementation in Board
+  // (slow, only meant for testing)
+  public static boolean differentialTesting = false;
+
+  private long whitePawns;
+  private long blackPawns;
+
+  public BitBoard() {
+    super();
+    syncFromPieces();
+  }
+
+  public BitBoard(ArrayList<Piece> pieces) {
+    super(pieces);
+    syncFromPieces();
+  }
+
+  // BitBoard copy of any board (e.g. so a search can always use the masks)
+  public BitBoard(Board board) {
+    this(board.copyPieces());
+    copyLastMoved(board);
+  }
+
+  public static long bit(Position position) {
+    return 1L << square(position);
+  }
+
+  private void syncFromPieces() {
+    whitePawns = 0;
+    blackPawns = 0;
+
+    for (Piece piece : getPieces()) {
+      setBit(piece, bit(piece.getPosition()));
+    }
+  }
+
+  private void setBit(Piece piece, long bit) {
+    assert piece instanceof Pawn;
+
+    if (piece.getColour() == Colour.WHITE) {
+      whitePawns |= bit;
+    } else {
+      blackPawns |= bit;
+    }
+  }
+
+  private void clearBit(Piece piece, long bit) {
+    if (piece.getColour() == Colour.WHITE) {
+      whitePawns &= ~bit;
+    } else {
+      blackPawns &= ~bit;
+    }
+  }
+
+  public long getPawns(Colour colour) {
+    return (colour == Colour.WHITE) ? whitePawns : blackPawns;
+  }
+
+  public long getOccupied() {
+    return whitePawns | blackPawns;
+  }
+
+  // Whether the side to move can take en passant
+  // (getEnPassantFile only says the last move was a double step)
+  public boolean canTakeEnPassant() {
+    int enPassantFile = getEnPassantFile();
+    if (enPassantFile == -1) {
+      return false;
+    }
+
+    Colour colourToMove = getColourToMove();
+    long movedPawn = 1L << ((colourToMove == Colour.WHITE ? 4 : 3) * 8 + enPassantFile);
+    long neighbours = ((movedPawn & ~FILE_A) >>> 1) | ((movedPawn & ~FILE_H) << 1);
+    return (neighbours & getPawns(colourToMove)) != 0;
+  }
+
+  /**
+   * Moves of the side to move (packed, see PackedMove), put in @moves (cleared first)
+   * Same moves as Player.getValidMoves, but read off the masks, so nothing is allocated.
+   */
+  public void generateMoves(MoveList moves) {
+    moves.clear();
+    Colour colour = getColourToMove();
+    boolean isWhite = colour == Colour.WHITE;
+    long own = getPawns(colour);
+    long opponent = isWhite ? blackPawns : whitePawns;
+    long empty = ~getOccupied();
+    int forward = isWhite ? 8 : -8;
+
+    long pushes, doubleSteps, leftCaptures, rightCaptures;
+    if (isWhite) {
+      pushes = (own << 8) & empty;
+      // Pawns pushed from row 1 land on row 2
+      doubleSteps = ((pushes & (FIRST_ROW << 16)) << 8) & empty;
+      leftCaptures = ((own & ~FILE_A) << 7) & opponent;
+      rightCaptures = ((own & ~FILE_H) << 9) & opponent;
+    } else {
+      pushes = (own >>> 8) & empty;
+      // Pawns pushed from row 6 land on row 5
+      doubleSteps = ((pushes & (FIRST_ROW << 40)) >>> 8) & empty;
+      leftCaptures = ((own & ~FILE_A) >>> 9) & opponent;
+      rightCaptures = ((own & ~FILE_H) >>> 7) & opponent;
+    }
+
+    addMoves(moves, pushes, forward, MoveType.PASSIVE);
+    addMoves(moves, doubleSteps, 2 * forward, MoveType.PASSIVE);
+    addMoves(moves, leftCaptures, forward - 1, MoveType.CAPTURE);
+    addMoves(moves, rightCaptures, forward + 1, MoveType.CAPTURE);
+
+    int enPassantFile = getEnPassantFile();
+    if (enPassantFile != -1) {
+      int victimSquare = (isWhite ? 4 : 3) * 8 + enPassantFile;
+      long victim = 1L << victimSquare;
+      long capturers = (((victim & ~FILE_A) >>> 1) | ((victim & ~FILE_H) << 1)) & own;
+
+      while (capturers != 0) {
+        int squareFrom = Long.numberOfTrailingZeros(capturers);
+        moves.add(PackedMove.pack(squareFrom, victimSquare + forward, MoveType.EN_PASSANT));
+        capturers &= capturers - 1;
+      }
+    }
+  }
+
+  // A move to every square of @targets, from @offset squares behind it
+  private static void addMoves(MoveList moves, long targets, int offset, MoveType moveType) {
+    while (targets != 0) {
+      int squareTo = Long.numberOfTrailingZeros(targets);
+      moves.add(PackedMove.pack(squareTo - offset, squareTo, moveType));
+      targets &= targets - 1;
+    }
+  }
+
+  @Override
+  public void addPiece(int index, Piece piece) {
+    super.addPiece(index, piece);
+    setBit(piece, bit(piece.getPosition()));
+  }
+
+  @Override
+  public void removePiece(Piece piece) {
+    super.removePiece(piece);
+    clearBit(piece, bit(piece.getPosition()));
+  }
+
+  @Override
+  public void movePiece(Piece piece, Position posTo) {
+    clearBit(piece, bit(piece.getPosition()));
+    super.movePiece(piece, posTo);
+    setBit(piece, bit(posTo));
+  }
+
+  // Read off Board's mailbox, only overridden to test it against the list and the masks
+  @Override
+  public Optional<Piece> findPieceAtPosition(Position position) {
+    Optional<Piece> maybePiece = super.findPieceAtPosition(position);
+
+    if (differentialTesting) {
+      checkAgainstList("findPieceAtPosition(" + position + ")",
+          maybePiece, findPieceInList(position));
+      checkAgainstList("findPieceAtPosition(" + position + ") (masks)",
+          maybePiece.isPresent(), (getOccupied() & bit(position)) != 0);
+    }
+
+    return maybePiece;
+  }
+
+  @Override
+  public int getNoPieces(Colour colour) {
+    int noPieces = Long.bitCount(getPawns(colour));
+
+    if (differentialTesting) {
+      checkAgainstList("getNoPieces(" + colour + ")", noPieces, getPieces(colour).size());
+      checkAgainstList("getNoPieces(" + colour + ") (evaluation state)", noPieces, super.getNoPieces(colour));
+    }
+
+    return noPieces;
+  }
+
+  @Override
+  public boolean checkWin(Colour colour) {
+    long lastRow = (colour == Colour.WHITE) ? LAST_ROW : FIRST_ROW;
+    long opponentPawns = (colour == Colour.WHITE) ? blackPawns : whitePawns;
+    boolean win = (getPawns(colour) & lastRow) != 0 || opponentPawns == 0;
+
+    if (differentialTesting) {
+      checkAgainstList("checkWin(" + colour + ")", win, super.checkWin(colour));
+    }
+
+    return win;
+  }
+
+  // Pushes and captures can be read off the masks,
+  // we only need to generate moves for the rare case where en passant is the only move left
+  private boolean hasValidMoves(Player player) {
+    Colour colour = player.getColour();
+    long empty = ~getOccupied();
+    long pushes, captures;
+
+    if (colour == Colour.WHITE) {
+      pushes = (whitePawns << 8) & empty;
+      captures = (((whitePawns & ~FILE_A) << 7) | ((whitePawns & ~FILE_H) << 9)) & blackPawns;
+    } else {
+      pushes = (blackPawns >>> 8) & empty;
+      captures = (((blackPawns & ~FILE_H) >>> 7) | ((blackPawns & ~FILE_A) >>> 9)) & whitePawns;
+    }
+
+    return (pushes | captures) != 0 || !player.getValidMoves().isEmpty();
+  }
+
+  @Override
+  public boolean checkDraw(Player playerToMove) {
+    boolean draw = getPawns(playerToMove.getColour()) != 0 && !hasValidMoves(playerToMove);
+
+    if (differentialTesting) {
+      checkAgainstList("checkDraw(" + playerToMove.getColour() + ")", draw, super.checkDraw(playerToMove));
+    }
+
+    return draw;
+  }
+
+  private void checkAgainstList(String query, Object bitBoardResult, Object listResult) {
+    if (!bitBoardResult.equals(listResult)) {
+      throw new IllegalStateException("BitBoard disagrees with list representation on " + query
+          + ": " + bitBoardResult + " vs " + listResult + "\n" + this);
+    }
+
+    // Masks should always describe exactly the pieces in the list
+    long white = 0, black = 0;
+    for (Piece piece : getPieces()) {
+      if (piece.getColour() == Colour.WHITE) {
+        white |= bit(piece.getPosition());
+      } else {
+        black |= bit(piece.getPosition());
+      }
+    }
+
+    if (white != whitePawns || black != blackPawns) {
+      throw new IllegalStateException("BitBoard masks out of sync with pieces\n" + this);
+    }
+  }
+
+  @Override
+  public Board copy() {
+    return new BitBoard(this);
+  }
+
+  // Testing
+  // Plays random games with differential testing on, so both representations are compared on every query
+  public static void main(String[] args) {
+    Random random = new Random(0);
+    int noGames = 200;
+    differentialTesting = true;
+    MoveList packedMoves = new MoveList();
+    int noPositions = 0;
+
+    for (int i = 0; i < noGames; i++) {
+      BitBoard board = new BitBoard();
+      Player white = new Player(Colour.WHITE, board);
+      Player black = new Player(Colour.BLACK, board);
+      Player toMove = white;
+
+      while (!board.checkWin(Colour.WHITE) && !board.checkWin(Colour.BLACK) && !board.checkDraw(toMove)) {
+        List<Move> moves = toMove.getValidMoves();
+
+        board.generateMoves(packedMoves);
+        boolean sameMoves = packedMoves.size() == moves.size();
+        for (Move move : moves) {
+          sameMoves &= packedMoves.contains(PackedMove.pack(move));
+        }
+        if (!sameMoves) {
+          throw new IllegalStateException("generateMoves gave " + packedMoves + " instead of " + moves + "\n" + board);
+        }
+        noPositions++;
+        boolean success = toMove.makeMove(moves.get(random.nextInt(moves.size())));
+        assert success;
+
+        for (int row = 0; row < board.getNoRows(); row++) {
+          for (int column = 0; column < board.getNoCols(); column++) {
+            board.findPieceAtPosition(Position.of(row, column));
+          }
+        }
+        board.getNoPieces(Colour.WHITE);
+        board.getNoPieces(Colour.BLACK);
+
+        toMove = (toMove == white) ? black : white;
+      }
+    }
+
+    System.out.println("BitBoard agrees with list representation over " + noGames + " random games");
+    System.out.println("generateMoves matched Player.getValidMoves in " + noPositions + " positions");
+
+    // Test: random games with packed moves (like AIMcts rollouts) allocate nothing per move,
+    // once the undo stack is big enough (so the same games are played twice, only the second time counts).
+    // A Move and an Optional per move would be ~40 bytes a move, the JVM itself may allocate a few bytes
+    differentialTesting = false;
+    BitBoard rolloutBoard = new BitBoard();
+    ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long allocatedBefore = 0;
+    int noMovesMade = 0;
+    for (int j = 0; j < 2; j++) {
+      Random gameRandom = new Random(0);
+      allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+      noMovesMade = 0;
+      for (int i = 0; i < noGames; i++) {
+        noMovesMade += playPackedGame(rolloutBoard, packedMoves, gameRandom);
+      }
+    }
+    long allocated = threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+    if (allocated > noMovesMade) {
+      throw new IllegalStateException("Making and unmaking packed moves allocated " + allocated + " bytes");
+    }
+    System.out.println("Made and unmade " + noMovesMade + " packed moves with " + allocated + " bytes allocated");
+  }
+
+  // Plays random moves until the game is over, then unmakes them all, returns the number of moves
+  private static int playPackedGame(BitBoard board, MoveList moves, Random random) {
+    int noMovesMade = 0;
+    while (!board.checkWin(Colour.WHITE) && !board.checkWin(Colour.BLACK)) {
+      board.generateMoves(moves);
+      if (moves.isEmpty()) {
+        break;
+      }
+      board.makeMove(moves.get(random.nextInt(moves.size())));
+      noMovesMade++;
+    }
+
+    for (int i = 0; i < noMovesMade; i++) {
+      board.unmakeMove();
+    }
+    return noMovesMade;
+  }
+}
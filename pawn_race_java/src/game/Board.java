@@ -4,22 +4,51 @@ import game.misc.*;
 import game.pieces.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 public class Board {
   private final int noRows = 8;
   private final int noCols = 8;
   private ArrayList<Piece> pieces = new ArrayList<>();
+  // Piece on each square (null if empty), kept in sync with @pieces
+  // so finding the piece on a square doesn't search the list
+  private final Piece[] mailbox = new Piece[noRows * noCols];
   private Piece lastMoved;
+  // Zobrist key of the position, kept up to date on every change to the board
+  private long zobristKey;
+  // Evaluation state, also kept up to date on every change (indexed by colour)
+  // Space of a piece is the number of rows it has moved up the board (from its side)
+  private final int[] noPieces = new int[2];
+  private final int[] space = new int[2];
+  // Undo records are reused, so making / unmaking moves does not allocate
+  private UndoRecord[] undoStack = new UndoRecord[0];
+  private int undoStackSize = 0;
 
   public Board () {
     this.setUpBoard();
+    this.fillMailbox();
+    this.zobristKey = Zobrist.computeKey(this);
+    this.computeEvaluationState();
   }
 
   public Board (ArrayList<Piece> pieces) {
     this.pieces = pieces;
+    this.fillMailbox();
+    this.zobristKey = Zobrist.computeKey(this);
+    this.computeEvaluationState();
+  }
+
+  // Squares are numbered 0 (a1) to 63 (h8), row by row
+  public static int square(int row, int column) {
+    return row * 8 + column;
+  }
+
+  public static int square(Position position) {
+    return position.square();
   }
 
   public int getNoRows() {
@@ -34,10 +63,66 @@ public class Board {
     return pieces;
   }
 
-  public void addPiece(Piece piece) { pieces.add(piece); }
+  public void addPiece(Piece piece) { addPiece(pieces.size(), piece); }
+
+  // Adds piece at @index of the pieces list (used to put captured pieces back where they were)
+  public void addPiece(int index, Piece piece) {
+    pieces.add(index, piece);
+    mailbox[piece.getPosition().square()] = piece;
+    zobristKey ^= Zobrist.pieceKey(piece);
+    noPieces[piece.getColour().ordinal()]++;
+    space[piece.getColour().ordinal()] += getSpaceOfPiece(piece);
+  }
 
   public void removePiece(Piece piece) {
     pieces.remove(piece);
+    mailbox[piece.getPosition().square()] = null;
+    zobristKey ^= Zobrist.pieceKey(piece);
+    noPieces[piece.getColour().ordinal()]--;
+    space[piece.getColour().ordinal()] -= getSpaceOfPiece(piece);
+  }
+
+  // All moves on the board should go through here (rather than Piece.setPosition),
+  // so that subclasses keeping their own representation (e.g. BitBoard) stay in sync
+  public void movePiece(Piece piece, Position posTo) {
+    zobristKey ^= Zobrist.pieceKey(piece);
+    space[piece.getColour().ordinal()] -= getSpaceOfPiece(piece);
+    mailbox[piece.getPosition().square()] = null;
+    piece.setPosition(posTo);
+    mailbox[posTo.square()] = piece;
+    zobristKey ^= Zobrist.pieceKey(piece);
+    space[piece.getColour().ordinal()] += getSpaceOfPiece(piece);
+  }
+
+  public int getSpaceOfPiece(Piece piece) {
+    int row = piece.getPosition().getRow();
+    return (piece.getColour() == Colour.WHITE) ? row : noRows - row - 1;
+  }
+
+  // Sum of the space of every piece of @colour
+  public int getSpace(Colour colour) {
+    return space[colour.ordinal()];
+  }
+
+  private void fillMailbox() {
+    Arrays.fill(mailbox, null);
+
+    for (Piece piece : pieces) {
+      assert mailbox[piece.getPosition().square()] == null;
+      mailbox[piece.getPosition().square()] = piece;
+    }
+  }
+
+  private void computeEvaluationState() {
+    for (Colour colour : Colour.values()) {
+      noPieces[colour.ordinal()] = 0;
+      space[colour.ordinal()] = 0;
+    }
+
+    for (Piece piece : pieces) {
+      noPieces[piece.getColour().ordinal()]++;
+      space[piece.getColour().ordinal()] += getSpaceOfPiece(piece);
+    }
   }
 
   public Piece getLastMoved() {
@@ -45,21 +130,156 @@ public class Board {
   }
 
   public void setLastMoved(Piece lastMoved) {
+    zobristKey ^= getStateKey();
     this.lastMoved = lastMoved;
+    zobristKey ^= getStateKey();
+  }
+
+  public long getZobristKey() {
+    return zobristKey;
+  }
+
+  // Derived from the last moved piece (white moves first)
+  public Colour getColourToMove() {
+    if (lastMoved == null) {
+      return Colour.WHITE;
+    }
+
+    return (lastMoved.getColour() == Colour.WHITE) ? Colour.BLACK : Colour.WHITE;
+  }
+
+  // Column of the pawn that can be taken en passant, or -1 if there is none
+  // (i.e. the last move was a pawn moving 2 squares)
+  public int getEnPassantFile() {
+    if (!(lastMoved instanceof Pawn && lastMoved.getNumTimesMoved() == 1)) {
+      return -1;
+    }
+
+    int doubleStepRow = (lastMoved.getColour() == Colour.WHITE) ? 3 : noRows - 4;
+    Position position = lastMoved.getPosition();
+    return (position.getRow() == doubleStepRow) ? position.getColumn() : -1;
+  }
+
+  private long getStateKey() {
+    return Zobrist.stateKey(getColourToMove(), getEnPassantFile());
   }
 
   private void setUpBoard() {
     for (int i = 0; i < noCols; i++) {
-      pieces.add(new Pawn(Colour.WHITE, new Position(1, i)));
-      pieces.add(new Pawn(Colour.BLACK, new Position(6, i)));
+      pieces.add(new Pawn(Colour.WHITE, Position.of(1, i)));
+      pieces.add(new Pawn(Colour.BLACK, Position.of(6, i)));
+    }
+  }
+
+  /**
+   * Make / unmake move
+   *
+   * makeMove assumes @move is valid on this board, has its move type set,
+   * and points to a piece of this board (e.g. it comes from Player.getValidMoves on this board).
+   * unmakeMove takes back the last move made, so a search can run on a single board.
+   */
+  public void makeMove(Move move) {
+    makeMove(move.getPiece(), move.getPosTo(), move.getMoveType());
+  }
+
+  // Same as makeMove(Move), with the move packed (see PackedMove)
+  // The piece comes from the mailbox, so no Move (or Optional) is allocated
+  public void makeMove(int packedMove) {
+    Piece piece = mailbox[PackedMove.getSquareFrom(packedMove)];
+    assert piece != null;
+    makeMove(piece, Position.ofSquare(PackedMove.getSquareTo(packedMove)), PackedMove.getMoveType(packedMove));
+  }
+
+  private void makeMove(Piece piece, Position posTo, MoveType moveType) {
+    UndoRecord undo = pushUndoRecord();
+
+    undo.piece = piece;
+    undo.posFrom = piece.getPosition();
+    undo.prevLastMoved = lastMoved;
+    // Side to move and en passant file change with the move
+    zobristKey ^= getStateKey();
+
+    // If there is a piece, capture that piece.
+    Piece captured = getPieceAt(posTo.square());
+    if (captured != null) {
+      undo.captured = captured;
+      undo.capturedIndex = pieces.indexOf(undo.captured);
+      removePiece(undo.captured);
+    }
+
+    // Pawn Race: En Passant
+    if (moveType == MoveType.EN_PASSANT) {
+      undo.enPassantVictim = getPieceAt(posTo.getPosBelow(piece.getColour()).square());
+      assert undo.enPassantVictim != null;
+      undo.enPassantVictimIndex = pieces.indexOf(undo.enPassantVictim);
+      removePiece(undo.enPassantVictim);
     }
+
+    // Move piece to square
+    movePiece(piece, posTo);
+
+    // Record piece last moved
+    lastMoved = piece;
+    piece.incrementNumTimesMoved();
+    undo.numTimesMovedDelta = 1;
+
+    zobristKey ^= getStateKey();
+  }
+
+  public void unmakeMove() {
+    assert undoStackSize > 0;
+    UndoRecord undo = undoStack[--undoStackSize];
+    zobristKey ^= getStateKey();
+
+    for (int i = 0; i < undo.numTimesMovedDelta; i++) {
+      undo.piece.decrementNumTimesMoved();
+    }
+    lastMoved = undo.prevLastMoved;
+    movePiece(undo.piece, undo.posFrom);
+
+    // Put back captured pieces in reverse order of removal
+    if (undo.enPassantVictim != null) {
+      addPiece(undo.enPassantVictimIndex, undo.enPassantVictim);
+    }
+    if (undo.captured != null) {
+      addPiece(undo.capturedIndex, undo.captured);
+    }
+
+    zobristKey ^= getStateKey();
+    undo.clear();
+  }
+
+  public int getNoMovesMade() {
+    return undoStackSize;
+  }
+
+  private UndoRecord pushUndoRecord() {
+    if (undoStackSize == undoStack.length) {
+      UndoRecord[] newStack = Arrays.copyOf(undoStack, Math.max(16, undoStack.length * 2));
+      for (int i = undoStack.length; i < newStack.length; i++) {
+        newStack[i] = new UndoRecord();
+      }
+      undoStack = newStack;
+    }
+
+    return undoStack[undoStackSize++];
   }
 
   public int getLastRow(Colour colour) {
     return (colour == Colour.WHITE) ? (getNoRows() - 1) : 0;
   }
 
+  // Piece on @square (see square), or null if it is empty
+  public Piece getPieceAt(int square) {
+    return mailbox[square];
+  }
+
   public Optional<Piece> findPieceAtPosition(Position position) {
+    return Optional.ofNullable(mailbox[position.square()]);
+  }
+
+  // Same as findPieceAtPosition, searching the list of pieces instead (for testing the mailbox)
+  protected Optional<Piece> findPieceInList(Position position) {
     List<Piece> foundPieces = pieces
         .stream()
         .filter(piece -> piece.getPosition().equals(position))
@@ -81,6 +301,10 @@ public class Board {
         .toList();
   }
 
+  public int getNoPieces(Colour colour) {
+    return noPieces[colour.ordinal()];
+  }
+
   public Piece getPieceAtPosition(Position position) {
     Optional<Piece> maybePiece = findPieceAtPosition(position);
     assert maybePiece.isPresent();
@@ -123,14 +347,28 @@ public class Board {
     return checkDraw(game.getPlayerTurn());
   }
 
-  public Board copy() {
+  protected ArrayList<Piece> copyPieces() {
     ArrayList<Piece> piecesCopy = new ArrayList<>();
 
     for (Piece piece : pieces) {
       piecesCopy.add(piece.copy());
     }
 
-    return new Board(piecesCopy);
+    return piecesCopy;
+  }
+
+  // Points lastMoved of this board (a copy of @board) to the copy of @board's last moved piece
+  protected void copyLastMoved(Board board) {
+    if (board.lastMoved != null) {
+      setLastMoved(pieces.get(board.pieces.indexOf(board.lastMoved)));
+    }
+  }
+
+  // Note: the undo stack is not copied, so moves made before the copy cannot be taken back
+  public Board copy() {
+    Board board = new Board(copyPieces());
+    board.copyLastMoved(this);
+    return board;
   }
 
   @Override
@@ -139,7 +377,7 @@ public class Board {
 
     for (int i = noRows - 1; i >= 0; i--) {
       for (int j = 0; j < noCols; j++) {
-        Position targetPos = new Position(i, j);
+        Position targetPos = Position.of(i, j);
         Optional<Piece> maybePiece = findPieceAtPosition(targetPos);
 
         if (maybePiece.isPresent()) {
@@ -158,6 +396,27 @@ public class Board {
     return sb.toString();
   }
 
+  // Everything needed to take back a move
+  private static class UndoRecord {
+    Piece piece;
+    Position posFrom;
+    Piece captured;
+    int capturedIndex;
+    Piece enPassantVictim;
+    int enPassantVictimIndex;
+    Piece prevLastMoved;
+    int numTimesMovedDelta;
+
+    void clear() {
+      piece = null;
+      posFrom = null;
+      captured = null;
+      enPassantVictim = null;
+      prevLastMoved = null;
+      numTimesMovedDelta = 0;
+    }
+  }
+
   // Testing
   public static void main(String[] args) {
     Board board = new Board();
@@ -166,5 +425,63 @@ public class Board {
 
     List<Move> validMoves = b.pieces.get(0).getValidMoves(b);
     System.out.println(validMoves);
+
+    // Test: random moves, then unmake all of them
+    // Before each move, keep everything unmaking it should restore
+    Random random = new Random(0);
+    Colour colourToMove = Colour.WHITE;
+    String before = board.toString();
+    List<Long> stateKeys = new ArrayList<>();
+    List<Long> zobristKeys = new ArrayList<>();
+    List<Piece> lastMoveds = new ArrayList<>();
+    List<List<Piece>> pieceLists = new ArrayList<>();
+    List<int[]> numTimesMoveds = new ArrayList<>();
+    List<Piece[]> mailboxes = new ArrayList<>();
+
+    while (!board.checkWin(Colour.WHITE) && !board.checkWin(Colour.BLACK)) {
+      List<Move> moves = new Player(colourToMove, board).getValidMoves();
+      if (moves.isEmpty()) {
+        break;
+      }
+
+      stateKeys.add(board.getStateKey());
+      zobristKeys.add(board.getZobristKey());
+      lastMoveds.add(board.lastMoved);
+      pieceLists.add(new ArrayList<>(board.pieces));
+      numTimesMoveds.add(board.pieces.stream().mapToInt(Piece::getNumTimesMoved).toArray());
+      mailboxes.add(board.mailbox.clone());
+
+      board.makeMove(moves.get(random.nextInt(moves.size())));
+      colourToMove = (colourToMove == Colour.WHITE) ? Colour.BLACK : Colour.WHITE;
+
+      // Evaluation state should match the pieces
+      for (Colour colour : Colour.values()) {
+        int spaceFromPieces = board.getPieces(colour).stream().mapToInt(board::getSpaceOfPiece).sum();
+        assert board.getNoPieces(colour) == board.getPieces(colour).size();
+        assert board.getSpace(colour) == spaceFromPieces;
+      }
+    }
+
+    System.out.println(board);
+    while (board.getNoMovesMade() > 0) {
+      board.unmakeMove();
+
+      // Same piece objects (in the same order), moved as many times, on the same squares
+      // (compared with ==, Piece.equals only compares type and position)
+      int i = board.getNoMovesMade();
+      boolean isRestored = board.getStateKey() == stateKeys.get(i) && board.getZobristKey() == zobristKeys.get(i)
+          && board.lastMoved == lastMoveds.get(i) && board.pieces.size() == pieceLists.get(i).size();
+      for (int j = 0; isRestored && j < board.pieces.size(); j++) {
+        isRestored = board.pieces.get(j) == pieceLists.get(i).get(j)
+            && board.pieces.get(j).getNumTimesMoved() == numTimesMoveds.get(i)[j];
+      }
+      for (int square = 0; isRestored && square < board.mailbox.length; square++) {
+        isRestored = board.mailbox[square] == mailboxes.get(i)[square];
+      }
+      if (!isRestored) {
+        throw new IllegalStateException("Board not restored after unmaking move " + (i + 1) + "\n" + board);
+      }
+    }
+    System.out.println("Board restored after unmaking (expected true): " + before.equals(board.toString()));
   }
 }
@@ -33,13 +33,22 @@ public class Game {
   public final AI aiBlack = new AIMinimax(this, Colour.BLACK);
 
   public Game() {
-    this.board = new Board();
+    this.board = new BitBoard();
     this.playerWhite = new Player(Colour.WHITE, this.board);
     this.playerBlack = new Player(Colour.BLACK, this.board);
     this.playerTurn = this.playerWhite;
     this.status = Status.PLAYING;
   }
 
+  // Game continuing from @board (e.g. from Perft.parsePosition)
+  public Game(Board board) {
+    this.board = board;
+    this.playerWhite = new Player(Colour.WHITE, this.board);
+    this.playerBlack = new Player(Colour.BLACK, this.board);
+    this.playerTurn = (board.getColourToMove() == Colour.WHITE) ? this.playerWhite : this.playerBlack;
+    this.status = Status.PLAYING;
+  }
+
   public Board getBoard() {
     return board;
   }
@@ -61,6 +70,26 @@ public class Game {
   }
 
   public boolean makeMove(Move move) {
+    MakeMoveEvent event = new MakeMoveEvent();
+    event.begin();
+    if (event.isEnabled()) {
+      // Before the move is made, since that changes the piece's position
+      event.move = move.toString();
+    }
+
+    boolean validMove = applyMove(move);
+
+    if (event.shouldCommit()) {
+      event.valid = validMove;
+      event.positionHash = board.getZobristKey();
+      event.noMovesMade = board.getNoMovesMade();
+      event.commit();
+    }
+
+    return validMove;
+  }
+
+  private boolean applyMove(Move move) {
     boolean validMove = playerTurn.makeMove(move);
 
     if (validMove) {
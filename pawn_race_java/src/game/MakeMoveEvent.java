@@ -0,0 +1,25 @@
+package game;
+
+import jdk.jfr.*;
+
+// JFR event for Game.makeMove
+@Name("pawnrace.MakeMove")
+@Label("Make Move")
+@Category({"Pawn Race", "Game"})
+@Description("A move made in the game (by a player or an AI)")
+@StackTrace(false)
+class MakeMoveEvent extends Event {
+  @Label("Move")
+  String move;
+
+  @Label("Valid")
+  boolean valid;
+
+  @Label("Position Hash")
+  @Description("Zobrist key of the position after the move")
+  long positionHash;
+
+  @Label("Moves Made")
+  @Description("Number of moves made in the game so far (i.e. the depth of the game tree)")
+  int noMovesMade;
+}
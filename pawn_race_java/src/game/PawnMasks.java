@@ -0,0 +1,185 @@
+package game;
+
+import game.misc.Colour;
+import game.misc.Move;
+import game.misc.Position;
+import game.pieces.Piece;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Precomputed pawn masks (for BitBoard)
+ *
+ * For every colour and square:
+ * - front span: squares ahead on the same file
+ * - attack span: squares ahead on the adjacent files (every square the pawn could ever capture on)
+ * - passed mask: front span + attack span, a pawn is passed if no enemy pawn is in it
+ * Plus file and adjacent file masks, for terms like isolated and doubled pawns.
+ */
+public class PawnMasks {
+  private static final long[] FILES = new long[8];
+  private static final long[] ADJACENT_FILES = new long[8];
+  private static final long[][] FRONT_SPANS = new long[2][64];
+  private static final long[][] ATTACK_SPANS = new long[2][64];
+  private static final long[][] PASSED_MASKS = new long[2][64];
+
+  static {
+    for (int column = 0; column < 8; column++) {
+      FILES[column] = BitBoard.FILE_A << column;
+    }
+    for (int column = 0; column < 8; column++) {
+      ADJACENT_FILES[column] = (column > 0 ? FILES[column - 1] : 0) | (column < 7 ? FILES[column + 1] : 0);
+    }
+
+    for (int square = 0; square < 64; square++) {
+      int row = square / 8;
+      int column = square % 8;
+
+      // Rows strictly ahead of the square, for each colour
+      long aheadOfWhite = (row == 7) ? 0 : (-1L << (8 * (row + 1)));
+      long aheadOfBlack = (1L << (8 * row)) - 1;
+
+      int white = Colour.WHITE.ordinal();
+      int black = Colour.BLACK.ordinal();
+
+      FRONT_SPANS[white][square] = FILES[column] & aheadOfWhite;
+      FRONT_SPANS[black][square] = FILES[column] & aheadOfBlack;
+      ATTACK_SPANS[white][square] = ADJACENT_FILES[column] & aheadOfWhite;
+      ATTACK_SPANS[black][square] = ADJACENT_FILES[column] & aheadOfBlack;
+      PASSED_MASKS[white][square] = FRONT_SPANS[white][square] | ATTACK_SPANS[white][square];
+      PASSED_MASKS[black][square] = FRONT_SPANS[black][square] | ATTACK_SPANS[black][square];
+    }
+  }
+
+  private PawnMasks() {}
+
+  public static long getFile(int column) {
+    return FILES[column];
+  }
+
+  public static long getAdjacentFiles(int column) {
+    return ADJACENT_FILES[column];
+  }
+
+  public static long getFrontSpan(Colour colour, int square) {
+    return FRONT_SPANS[colour.ordinal()][square];
+  }
+
+  public static long getAttackSpan(Colour colour, int square) {
+    return ATTACK_SPANS[colour.ordinal()][square];
+  }
+
+  public static long getPassedMask(Colour colour, int square) {
+    return PASSED_MASKS[colour.ordinal()][square];
+  }
+
+  public static boolean isPassed(Colour colour, int square, long opponentPawns) {
+    return (PASSED_MASKS[colour.ordinal()][square] & opponentPawns) == 0;
+  }
+
+  // Mask of the passed pawns among @pawns (of @colour)
+  public static long getPassedPawns(Colour colour, long pawns, long opponentPawns) {
+    long passedPawns = 0;
+
+    for (long remaining = pawns; remaining != 0; remaining &= remaining - 1) {
+      int square = Long.numberOfTrailingZeros(remaining);
+      if (isPassed(colour, square, opponentPawns)) {
+        passedPawns |= 1L << square;
+      }
+    }
+
+    return passedPawns;
+  }
+
+  // Square of the pawn in @pawns closest to the last row of @colour, or -1 if @pawns is empty
+  public static int getMostAdvanced(Colour colour, long pawns) {
+    if (pawns == 0) {
+      return -1;
+    }
+
+    return (colour == Colour.WHITE)
+        ? 63 - Long.numberOfLeadingZeros(pawns)
+        : Long.numberOfTrailingZeros(pawns);
+  }
+
+  // Pawns with no pawn of the same colour on an adjacent file
+  public static long getIsolatedPawns(long pawns) {
+    long isolatedPawns = 0;
+
+    for (int column = 0; column < 8; column++) {
+      if ((pawns & ADJACENT_FILES[column]) == 0) {
+        isolatedPawns |= pawns & FILES[column];
+      }
+    }
+
+    return isolatedPawns;
+  }
+
+  // Pawns with a pawn of the same colour ahead of them on the same file
+  public static long getDoubledPawns(Colour colour, long pawns) {
+    long doubledPawns = 0;
+
+    for (long remaining = pawns; remaining != 0; remaining &= remaining - 1) {
+      int square = Long.numberOfTrailingZeros(remaining);
+      if ((FRONT_SPANS[colour.ordinal()][square] & pawns) != 0) {
+        doubledPawns |= 1L << square;
+      }
+    }
+
+    return doubledPawns;
+  }
+
+  // Testing
+  // Compares passed pawns from the masks with the pairwise definition, in random positions
+  public static void main(String[] args) {
+    Random random = new Random(0);
+    int noPositions = 0;
+
+    for (int i = 0; i < 300; i++) {
+      BitBoard board = new BitBoard();
+
+      while (!board.checkWin(Colour.WHITE) && !board.checkWin(Colour.BLACK)) {
+        List<Move> moves = new Player(board.getColourToMove(), board).getValidMoves();
+        if (moves.isEmpty()) {
+          break;
+        }
+        board.makeMove(moves.get(random.nextInt(moves.size())));
+
+        for (Colour colour : Colour.values()) {
+          Colour opposite = (colour == Colour.WHITE) ? Colour.BLACK : Colour.WHITE;
+          long expected = 0;
+
+          for (Piece piece : board.getPieces(colour)) {
+            boolean passed = true;
+            Position pos = piece.getPosition();
+
+            for (Piece opponentPiece : board.getPieces(opposite)) {
+              Position opponentPos = opponentPiece.getPosition();
+              boolean ahead = (colour == Colour.WHITE)
+                  ? opponentPos.getRow() > pos.getRow()
+                  : opponentPos.getRow() < pos.getRow();
+
+              if (Math.abs(pos.getColumn() - opponentPos.getColumn()) <= 1 && ahead) {
+                passed = false;
+              }
+            }
+
+            if (passed) {
+              expected |= BitBoard.bit(pos);
+            }
+          }
+
+          long actual = getPassedPawns(colour, board.getPawns(colour), board.getPawns(opposite));
+          if (actual != expected) {
+            throw new IllegalStateException("Passed pawns of " + colour + " differ\n" + board);
+          }
+        }
+
+        noPositions++;
+      }
+    }
+
+    System.out.println("Passed pawns matched in " + noPositions + " positions");
+  }
+}
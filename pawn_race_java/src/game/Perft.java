@@ -0,0 +1,335 @@
+package game;
+
+import game.misc.Colour;
+import game.misc.Move;
+import game.misc.MoveList;
+import game.misc.MoveType;
+import game.misc.PackedMove;
+import game.misc.Position;
+import game.pieces.Pawn;
+import game.pieces.Piece;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Perft (performance test) of the move generator
+ *
+ * Counts the leaf nodes of the tree of valid moves to a fixed depth, split by move type,
+ * so changes to Player.getValidMoves / Pawn.getValidMoves can be checked against known counts
+ * (and timed). Finished games (a pawn on the last row, or no pieces left) are not expanded.
+ *
+ * Positions are written like FEN, with only pawns:
+ *   rows from 8 to 1 separated by '/' (P white pawn, p black pawn, digits for empty squares),
+ *   colour to move (w / b), and the en passant square ('-' if there is none)
+ * e.g. the start position is "8/pppppppp/8/8/8/8/PPPPPPPP/8 w -"
+ *
+ * Usage: Perft [position depth [divide]], with no arguments the reference positions are checked
+ */
+public class Perft {
+  public static final String START_POSITION = "8/pppppppp/8/8/8/8/PPPPPPPP/8 w -";
+
+  /**
+   * Position, depth, expected nodes, then leaf moves by type (PASSIVE, CAPTURE, EN_PASSANT)
+   *
+   * Where the numbers come from:
+   *   hand: counted by hand (the working is in the comment)
+   *   generators: too many to count by hand, so only checked to be what both move generators give
+   *     (Player.getValidMoves with Board.makeMove(Move), and BitBoard.generateMoves with
+   *     Board.makeMove(int), which share no move generation code, see main)
+   */
+  private static final Object[][] REFERENCE_POSITIONS = {
+      // hand: 8 pawns, 1 or 2 squares each
+      {START_POSITION, 1, 16L, 16L, 0L, 0L},
+      // hand: 16 * 16, nothing can block or capture yet
+      {START_POSITION, 2, 256L, 256L, 0L, 0L},
+      // hand: 256 * 15 (7 unmoved pawns, and the moved one goes forward or takes),
+      // - 8 (both double stepped on the same file, blocked) + 14 (both double stepped on next files, 1 more capture)
+      {START_POSITION, 3, 3846L, 3832L, 14L, 0L},
+      // generators
+      {START_POSITION, 4, 57744L, 57324L, 420L, 0L},
+      {START_POSITION, 5, 815968L, 803180L, 12580L, 208L},
+      // En passant available for white (after d7-d5)
+      // hand: 7 unmoved pawns * 2, e5-e6, and e5xd6
+      {"8/ppp1pppp/8/3pP3/8/8/PPPP1PPP/8 w d6", 1, 16L, 15L, 0L, 1L},
+      // generators
+      {"8/ppp1pppp/8/3pP3/8/8/PPPP1PPP/8 w d6", 3, 3216L, 3130L, 72L, 14L},
+      {"8/ppp1pppp/8/3pP3/8/8/PPPP1PPP/8 w d6", 4, 42460L, 40922L, 1524L, 14L},
+      // En passant available for black (after d2-d4)
+      // hand: 7 unmoved pawns * 2, e4-e3, and e4xd3
+      {"8/pppp1ppp/8/8/3Pp3/8/PPP2PPP/8 b d3", 1, 16L, 15L, 0L, 1L},
+      // generators
+      {"8/pppp1ppp/8/8/3Pp3/8/PPP2PPP/8 b d3", 3, 2989L, 2918L, 57L, 14L},
+      {"8/pppp1ppp/8/8/3Pp3/8/PPP2PPP/8 b d3", 4, 36462L, 35177L, 1271L, 14L},
+      // Middle game
+      // generators
+      {"8/p1p2ppp/1p6/3pP3/2P5/8/PP3PPP/8 b -", 4, 24286L, 21948L, 2198L, 140L},
+      {"8/p1p2ppp/1p6/3pP3/2P5/8/PP3PPP/8 b -", 5, 271048L, 242049L, 28719L, 280L},
+      // Black double step between 2 white pawns
+      // hand: after c6, white has b6, d6, bxc6, dxc6; after c5, b6, d6 and the same captures en passant
+      {"8/2p5/8/1P1P4/8/8/8/8 b -", 2, 8L, 4L, 2L, 2L},
+      // hand: taking c6 ends the game (no black pawns), after c6 b6 black has c5 (then b7, d6) or cxd5 (then b7),
+      // the same after c6 d6, and after c5 b6 / c5 d6 black only has c4 (then 2 moves): 3 + 3 + 2 + 2
+      {"8/2p5/8/1P1P4/8/8/8/8 b -", 4, 10L, 10L, 0L, 0L},
+      // Race
+      // hand: f6 or f5, b3 or b4, then 1 push each
+      {"8/5p2/8/8/8/8/1P6/8 b -", 4, 4L, 4L, 0L, 0L},
+      // Every pawn is blocked (draw)
+      // hand: nothing to push or take
+      {"8/p7/P7/8/1p6/1P6/8/8 w -", 1, 0L, 0L, 0L, 0L},
+  };
+
+  // Counts of the last run
+  private final long[] leafMovesByType = new long[MoveType.values().length];
+  private long noLeafNodes;
+  private long elapsedNanos;
+
+  public long perft(Board board, int depth) {
+    for (int i = 0; i < leafMovesByType.length; i++) {
+      leafMovesByType[i] = 0;
+    }
+
+    long start = System.nanoTime();
+    noLeafNodes = count(board, depth);
+    elapsedNanos = System.nanoTime() - start;
+
+    return noLeafNodes;
+  }
+
+  /**
+   * Same count with BitBoard.generateMoves and packed moves (Board.makeMove(int)),
+   * a second move generator to check the first against
+   */
+  public long perftPacked(BitBoard board, int depth) {
+    for (int i = 0; i < leafMovesByType.length; i++) {
+      leafMovesByType[i] = 0;
+    }
+    MoveList[] movesByPly = new MoveList[depth + 1];
+    for (int i = 0; i < movesByPly.length; i++) {
+      movesByPly[i] = new MoveList();
+    }
+
+    long start = System.nanoTime();
+    noLeafNodes = countPacked(board, depth, movesByPly);
+    elapsedNanos = System.nanoTime() - start;
+
+    return noLeafNodes;
+  }
+
+  // Leaf count under each root move
+  public List<String> divide(Board board, int depth) {
+    assert depth >= 1;
+    List<String> lines = new ArrayList<>();
+    long total = 0;
+
+    for (Move move : new Player(board.getColourToMove(), board).getValidMoves()) {
+      String name = move.toString();
+      board.makeMove(move);
+      long noNodes = count(board, depth - 1);
+      board.unmakeMove();
+
+      total += noNodes;
+      lines.add(name + ": " + noNodes);
+    }
+
+    lines.add("Total: " + total);
+    return lines;
+  }
+
+  private long count(Board board, int depth) {
+    if (depth == 0) {
+      return 1;
+    }
+    if (board.checkWin(Colour.WHITE) || board.checkWin(Colour.BLACK)) {
+      return 0;
+    }
+
+    List<Move> moves = new Player(board.getColourToMove(), board).getValidMoves();
+
+    // Bulk count at the last ply
+    if (depth == 1) {
+      for (Move move : moves) {
+        leafMovesByType[move.getMoveType().ordinal()]++;
+      }
+      return moves.size();
+    }
+
+    long noNodes = 0;
+    for (Move move : moves) {
+      board.makeMove(move);
+      noNodes += count(board, depth - 1);
+      board.unmakeMove();
+    }
+
+    return noNodes;
+  }
+
+  private long countPacked(BitBoard board, int depth, MoveList[] movesByPly) {
+    if (depth == 0) {
+      return 1;
+    }
+    if (board.checkWin(Colour.WHITE) || board.checkWin(Colour.BLACK)) {
+      return 0;
+    }
+
+    MoveList moves = movesByPly[depth];
+    board.generateMoves(moves);
+
+    if (depth == 1) {
+      for (int i = 0; i < moves.size(); i++) {
+        leafMovesByType[PackedMove.getMoveType(moves.get(i)).ordinal()]++;
+      }
+      return moves.size();
+    }
+
+    long noNodes = 0;
+    for (int i = 0; i < moves.size(); i++) {
+      board.makeMove(moves.get(i));
+      noNodes += countPacked(board, depth - 1, movesByPly);
+      board.unmakeMove();
+    }
+
+    return noNodes;
+  }
+
+  public long getNoLeafMoves(MoveType moveType) {
+    return leafMovesByType[moveType.ordinal()];
+  }
+
+  // Whether the last run gave the counts of a row of @REFERENCE_POSITIONS
+  private boolean matches(Object[] reference) {
+    return noLeafNodes == (long) reference[2]
+        && getNoLeafMoves(MoveType.PASSIVE) == (long) reference[3]
+        && getNoLeafMoves(MoveType.CAPTURE) == (long) reference[4]
+        && getNoLeafMoves(MoveType.EN_PASSANT) == (long) reference[5];
+  }
+
+  public long getNodesPerSecond() {
+    return noLeafNodes * 1_000_000_000L / Math.max(1, elapsedNanos);
+  }
+
+  public String getSummary() {
+    return String.format("Nodes: %d (passive %d, capture %d, en passant %d), %dms, %d nodes/s",
+        noLeafNodes,
+        getNoLeafMoves(MoveType.PASSIVE), getNoLeafMoves(MoveType.CAPTURE), getNoLeafMoves(MoveType.EN_PASSANT),
+        elapsedNanos / 1_000_000, getNodesPerSecond());
+  }
+
+  /**
+   * Board from a position string (see top of class)
+   *
+   * The board works out whose turn it is and en passant from the last moved piece,
+   * so that is set up to match: with black to move, the last moved piece is a white pawn
+   * (the one that moved 2 squares, if there is an en passant square).
+   */
+  public static BitBoard parsePosition(String position) {
+    String[] fields = position.trim().split("\\s+");
+    String[] rows = fields[0].split("/");
+    if (rows.length != 8) {
+      throw new IllegalArgumentException("Expected 8 rows: " + position);
+    }
+
+    Colour colourToMove = (fields.length > 1 && fields[1].equals("b")) ? Colour.BLACK : Colour.WHITE;
+    Position enPassantSquare = (fields.length > 2 && !fields[2].equals("-"))
+        ? Position.of(fields[2].charAt(1) - '1', fields[2].charAt(0) - 'a')
+        : null;
+
+    ArrayList<Piece> pieces = new ArrayList<>();
+    Piece lastMoved = null;
+
+    for (int i = 0; i < rows.length; i++) {
+      int row = 7 - i;
+      int column = 0;
+
+      for (char c : rows[i].toCharArray()) {
+        if (Character.isDigit(c)) {
+          column += c - '0';
+          continue;
+        }
+        if (c != 'P' && c != 'p') {
+          throw new IllegalArgumentException("Only pawns are supported: " + position);
+        }
+
+        Colour colour = (c == 'P') ? Colour.WHITE : Colour.BLACK;
+        Pawn pawn = new Pawn(colour, Position.of(row, column));
+        int noRowsMoved = (colour == Colour.WHITE) ? row - 1 : 6 - row;
+        boolean movedTwoSquares = enPassantSquare != null
+            && enPassantSquare.getColumn() == column
+            && enPassantSquare.getRow() == ((colour == Colour.WHITE) ? row - 1 : row + 1);
+
+        // Only a pawn that just moved 2 squares has moved once and is on its double step row
+        int numTimesMoved = movedTwoSquares ? 1 : noRowsMoved;
+        for (int j = 0; j < numTimesMoved; j++) {
+          pawn.incrementNumTimesMoved();
+        }
+
+        if (movedTwoSquares) {
+          lastMoved = pawn;
+        } else if (lastMoved == null && colour != colourToMove) {
+          lastMoved = pawn;
+        }
+
+        pieces.add(pawn);
+        column++;
+      }
+    }
+
+    if (enPassantSquare != null && (lastMoved == null || lastMoved.getNumTimesMoved() != 1)) {
+      throw new IllegalArgumentException("No pawn to take en passant: " + position);
+    }
+    if (colourToMove == Colour.BLACK && lastMoved == null) {
+      throw new IllegalArgumentException("Black cannot move first without white pawns: " + position);
+    }
+
+    BitBoard board = new BitBoard(pieces);
+    if (colourToMove == Colour.BLACK || enPassantSquare != null) {
+      board.setLastMoved(lastMoved);
+    }
+
+    assert board.getColourToMove() == colourToMove;
+    return board;
+  }
+
+  public static void main(String[] args) {
+    if (args.length >= 2) {
+      Board board = parsePosition(args[0]);
+      int depth = Integer.parseInt(args[1]);
+      Perft perft = new Perft();
+
+      if (args.length >= 3 && args[2].equals("divide")) {
+        perft.divide(board, depth).forEach(System.out::println);
+      }
+      perft.perft(board, depth);
+      System.out.println(perft.getSummary());
+      return;
+    }
+
+    // Testing
+    // Every reference position should give the expected counts, with both move generators
+    Perft perft = new Perft();
+    int noFailed = 0;
+
+    for (Object[] reference : REFERENCE_POSITIONS) {
+      String position = (String) reference[0];
+      int depth = (int) reference[1];
+
+      perft.perft(parsePosition(position), depth);
+      boolean passed = perft.matches(reference);
+      String summary = perft.getSummary();
+
+      perft.perftPacked(parsePosition(position), depth);
+      boolean packedPassed = perft.matches(reference);
+
+      if (!passed || !packedPassed) {
+        noFailed++;
+      }
+      System.out.println((passed && packedPassed ? "OK   " : "FAIL ") + position + " depth " + depth + ": "
+          + summary + (packedPassed ? "" : "\n     packed: " + perft.getSummary()));
+    }
+
+    if (noFailed > 0) {
+      throw new IllegalStateException(noFailed + " reference positions gave the wrong counts");
+    }
+    System.out.println("All " + REFERENCE_POSITIONS.length + " reference positions passed");
+  }
+}
@@ -2,7 +2,6 @@ package game;
 
 import game.misc.Colour;
 import game.misc.Move;
-import game.misc.MoveType;
 import game.misc.Position;
 import game.pieces.King;
 import game.pieces.Piece;
@@ -53,27 +52,7 @@ public class Player {
     assert(moveInValidMoves.isPresent());
     move = moveInValidMoves.get();
 
-    // If there is a piece, capture that piece.
-    Optional<Piece> maybePiece = b.findPieceAtPosition(move.getPosTo());
-    if (maybePiece.isPresent()) {
-      Piece pieceToCapture = maybePiece.get();
-      b.removePiece(pieceToCapture);
-    }
-
-    // Pawn Race: En Passant
-    if (move.getMoveType() == MoveType.EN_PASSANT) {
-      maybePiece = b.findPieceAtPosition(move.getPosTo().getPosBelow(move.getPiece().getColour()));
-      assert(maybePiece.isPresent());
-      Piece pieceToCapture = maybePiece.get();
-      b.removePiece(pieceToCapture);
-    }
-
-    // Move piece to square
-    move.getPiece().setPosition(move.getPosTo());
-
-    // Record piece last moved
-    b.setLastMoved(move.getPiece());
-    move.getPiece().incrementNumTimesMoved();
+    b.makeMove(move);
 
     return true;
   }
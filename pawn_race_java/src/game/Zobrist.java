@@ -0,0 +1,133 @@
+package game;
+
+import game.misc.Colour;
+import game.misc.Move;
+import game.pieces.Piece;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Zobrist hashing
+ *
+ * A position is identified by xor-ing together one random 64-bit key per pawn (colour, square),
+ * one for the side to move (if black) and one for the en passant file (if any).
+ * Board keeps its key up to date incrementally, computeKey is the from-scratch version.
+ */
+public class Zobrist {
+  // Fixed seed, so keys are the same from one run to the next
+  private static final long SEED = 2021;
+  private static final long[][] PAWN_KEYS = new long[2][64];
+  private static final long[] EN_PASSANT_KEYS = new long[8];
+  private static final long BLACK_TO_MOVE_KEY;
+
+  static {
+    Random random = new Random(SEED);
+
+    for (int i = 0; i < 64; i++) {
+      PAWN_KEYS[0][i] = random.nextLong();
+      PAWN_KEYS[1][i] = random.nextLong();
+    }
+    for (int i = 0; i < 8; i++) {
+      EN_PASSANT_KEYS[i] = random.nextLong();
+    }
+    BLACK_TO_MOVE_KEY = random.nextLong();
+  }
+
+  private Zobrist() {}
+
+  // In Pawn Race every piece is a pawn, so the piece type is not part of the key
+  public static long pieceKey(Colour colour, int square) {
+    return PAWN_KEYS[colour.ordinal()][square];
+  }
+
+  public static long pieceKey(Piece piece) {
+    return pieceKey(piece.getColour(), Board.square(piece.getPosition()));
+  }
+
+  public static long enPassantKey(int column) {
+    return EN_PASSANT_KEYS[column];
+  }
+
+  public static long blackToMoveKey() {
+    return BLACK_TO_MOVE_KEY;
+  }
+
+  // Side to move and en passant file
+  public static long stateKey(Colour colourToMove, int enPassantFile) {
+    long key = 0;
+
+    if (colourToMove == Colour.BLACK) {
+      key ^= BLACK_TO_MOVE_KEY;
+    }
+    if (enPassantFile >= 0) {
+      key ^= EN_PASSANT_KEYS[enPassantFile];
+    }
+
+    return key;
+  }
+
+  public static long computeKey(Board board) {
+    long key = stateKey(board.getColourToMove(), board.getEnPassantFile());
+
+    for (Piece piece : board.getPieces()) {
+      key ^= pieceKey(piece);
+    }
+
+    return key;
+  }
+
+  // Testing
+  // Incremental keys should always match keys computed from scratch, making and unmaking moves
+  public static void main(String[] args) {
+    Random random = new Random(0);
+    int noGames = 500;
+    int noChecks = 0;
+
+    for (int i = 0; i < noGames; i++) {
+      Board board = (i % 2 == 0) ? new Board() : new BitBoard();
+      long startKey = board.getZobristKey();
+
+      while (!board.checkWin(Colour.WHITE) && !board.checkWin(Colour.BLACK)) {
+        List<Move> moves = new Player(board.getColourToMove(), board).getValidMoves();
+        if (moves.isEmpty()) {
+          break;
+        }
+
+        // Try every move (and take it back) before playing a random one
+        for (Move move : moves) {
+          long key = board.getZobristKey();
+          board.makeMove(move);
+          check(board);
+          board.unmakeMove();
+          check(board);
+          assert board.getZobristKey() == key;
+          noChecks += 2;
+        }
+
+        board.makeMove(moves.get(random.nextInt(moves.size())));
+        check(board);
+        check(board.copy());
+        noChecks += 2;
+      }
+
+      while (board.getNoMovesMade() > 0) {
+        board.unmakeMove();
+        check(board);
+        noChecks++;
+      }
+
+      if (board.getZobristKey() != startKey) {
+        throw new IllegalStateException("Key of starting position changed after unmaking every move");
+      }
+    }
+
+    System.out.println("Incremental keys matched keys from scratch (" + noChecks + " checks)");
+  }
+
+  private static void check(Board board) {
+    if (board.getZobristKey() != computeKey(board)) {
+      throw new IllegalStateException("Incremental Zobrist key differs from key computed from scratch\n" + board);
+    }
+  }
+}
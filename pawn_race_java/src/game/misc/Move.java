@@ -2,7 +2,6 @@ package game.misc;
 
 import game.pieces.Piece;
 
-import java.util.Objects;
 import java.util.Set;
 
 public class Move {
@@ -46,13 +45,15 @@ public class Move {
     }
   }
 
+  // Pieces have no hashCode of their own (DefaultPiece only overrides equals),
+  // so hash the squares equals compares instead
   @Override
   public int hashCode() {
-    return Objects.hash(piece, posTo);
+    return (piece.getPosition().square() << 6) | posTo.square();
   }
 
   public Move copy() {
-    return new Move(piece.copy(), posTo.copy(), moveType);
+    return new Move(piece.copy(), posTo, moveType);
   }
 
   @Override
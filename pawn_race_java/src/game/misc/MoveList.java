@@ -0,0 +1,80 @@
+package game.misc;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * List of packed moves (see PackedMove) in an int array
+ *
+ * Meant to be reused: clear() it and fill it again, so generating moves allocates nothing
+ * (the array only grows if a position has more moves than ever before).
+ */
+public class MoveList {
+  // 8 pawns with at most 4 moves each (push, double step, 2 captures)
+  private static final int DEFAULT_CAPACITY = 32;
+
+  private int[] moves;
+  private int size = 0;
+
+  public MoveList() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public MoveList(int capacity) {
+    moves = new int[capacity];
+  }
+
+  public void add(int packedMove) {
+    if (size == moves.length) {
+      moves = Arrays.copyOf(moves, 2 * moves.length);
+    }
+    moves[size++] = packedMove;
+  }
+
+  public int get(int index) {
+    assert index < size;
+    return moves[index];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  public void shuffle(Random random) {
+    for (int i = size - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int move = moves[i];
+      moves[i] = moves[j];
+      moves[j] = move;
+    }
+  }
+
+  public boolean contains(int packedMove) {
+    for (int i = 0; i < size; i++) {
+      if (moves[i] == packedMove) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(PackedMove.toString(moves[i]));
+    }
+    return sb.append("]").toString();
+  }
+}
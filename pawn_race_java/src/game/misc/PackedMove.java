@@ -0,0 +1,65 @@
+package game.misc;
+
+import game.Board;
+import game.pieces.Piece;
+
+import java.util.Optional;
+
+/**
+ * Move packed into an int, so move lists and searches don't need a Move object per move
+ *
+ * Bits 0-5: square to, bits 6-11: square from (see Board.square), bits 12-13: MoveType.
+ * The low 12 bits are the same as MoveOrderer.encodeMove / TranspositionTable.encodeMove,
+ * so getFromTo(packedMove) can be compared with moves stored in the table.
+ *
+ * Packed moves don't know their piece, use toMove to get a Move for a board
+ * (e.g. for the GUI or Game.makeMove).
+ */
+public class PackedMove {
+  private static final MoveType[] MOVE_TYPES = MoveType.values();
+
+  private PackedMove() {}
+
+  public static int pack(int squareFrom, int squareTo, MoveType moveType) {
+    return (moveType.ordinal() << 12) | (squareFrom << 6) | squareTo;
+  }
+
+  // @move must have its move type set (e.g. it comes from Player.getValidMoves)
+  public static int pack(Move move) {
+    return pack(move.getPiece().getPosition().square(), move.getPosTo().square(), move.getMoveType());
+  }
+
+  public static int getSquareFrom(int packedMove) {
+    return (packedMove >>> 6) & 63;
+  }
+
+  public static int getSquareTo(int packedMove) {
+    return packedMove & 63;
+  }
+
+  public static int getFromTo(int packedMove) {
+    return packedMove & 0xFFF;
+  }
+
+  public static MoveType getMoveType(int packedMove) {
+    return MOVE_TYPES[packedMove >>> 12];
+  }
+
+  public static boolean isCapture(int packedMove) {
+    return (packedMove >>> 12) != MoveType.PASSIVE.ordinal();
+  }
+
+  // Move of the piece on @board at the square from
+  public static Move toMove(int packedMove, Board board) {
+    int squareFrom = getSquareFrom(packedMove);
+    Optional<Piece> piece = board.findPieceAtPosition(Position.ofSquare(squareFrom));
+    assert piece.isPresent();
+
+    int squareTo = getSquareTo(packedMove);
+    return new Move(piece.get(), Position.ofSquare(squareTo), getMoveType(packedMove));
+  }
+
+  public static String toString(int packedMove) {
+    return Position.ofSquare(getSquareFrom(packedMove)) + "-" + Position.ofSquare(getSquareTo(packedMove));
+  }
+}
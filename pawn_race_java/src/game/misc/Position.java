@@ -2,16 +2,64 @@ package game.misc;
 
 import game.Board;
 
-// Position is 0-indexed
-// (3, 5) means f4
-public class Position {
-  private final int LOWERCASE_CONSTANT = 97;
-  private int row;
-  private int column;
-
-  public Position(int row, int column) {
+/**
+ * Position is 0-indexed
+ * (3, 5) means f4
+ *
+ * Positions are immutable and interned: there is exactly one Position per square,
+ * got with Position.of (or Position.ofSquare), so they can be shared freely and compared with ==.
+ * Neighbours come from tables built once, and are null off the board.
+ */
+public final class Position {
+  private static final int LOWERCASE_CONSTANT = 97;
+  private static final int NO_ROWS = 8;
+  private static final int NO_COLS = 8;
+
+  private static final Position[] SQUARES = new Position[NO_ROWS * NO_COLS];
+  private static final Position[] LEFT = new Position[SQUARES.length];
+  private static final Position[] RIGHT = new Position[SQUARES.length];
+  private static final Position[] UP = new Position[SQUARES.length];
+  private static final Position[] DOWN = new Position[SQUARES.length];
+
+  static {
+    for (int square = 0; square < SQUARES.length; square++) {
+      SQUARES[square] = new Position(square / NO_COLS, square % NO_COLS);
+    }
+
+    for (Position position : SQUARES) {
+      int square = position.square;
+      LEFT[square] = position.offset(0, -1);
+      RIGHT[square] = position.offset(0, 1);
+      UP[square] = position.offset(1, 0);
+      DOWN[square] = position.offset(-1, 0);
+    }
+  }
+
+  private final int row;
+  private final int column;
+  private final int square;
+  private final String name;
+
+  private Position(int row, int column) {
     this.row = row;
     this.column = column;
+    this.square = Board.square(row, column);
+    this.name = "" + (char) (column + LOWERCASE_CONSTANT) + (row + 1);
+  }
+
+  public static boolean isOnBoard(int row, int column) {
+    return row >= 0 && row < NO_ROWS && column >= 0 && column < NO_COLS;
+  }
+
+  public static Position of(int row, int column) {
+    if (!isOnBoard(row, column)) {
+      throw new IllegalArgumentException("Not on the board: (" + row + ", " + column + ")");
+    }
+    return SQUARES[row * NO_COLS + column];
+  }
+
+  public static Position ofSquare(int square) {
+    return SQUARES[square];
   }
 
   public int getRow() {
@@ -22,86 +70,78 @@ public class Position {
     return column;
   }
 
-  public void setRow(int row) {
-    this.row = row;
-  }
-
-  public void setColumn(int column) {
-    this.column = column;
+  // See Board.square
+  public int square() {
+    return square;
   }
 
-  // Allows chaining
-  public Position moveLeft() {
-    this.column--;
-    return this;
+  // -------------------- Neighbours (null off the board) --------------------
+  public Position left() {
+    return LEFT[square];
   }
 
-  public Position moveRight() {
-    this.column++;
-    return this;
+  public Position right() {
+    return RIGHT[square];
   }
 
-  public Position moveUp() {
-    this.row++;
-    return this;
+  public Position up() {
+    return UP[square];
   }
 
-  public Position moveDown() {
-    this.row--;
-    return this;
+  public Position down() {
+    return DOWN[square];
   }
 
-  public Position moveForward(Colour colour) {
-    if (colour.equals(Colour.WHITE)) {
-      return moveUp();
-    } else {
-      return moveDown();
-    }
+  public Position forward(Colour colour) {
+    return colour.equals(Colour.WHITE) ? up() : down();
   }
 
   public Position getPosBelow(Colour colour) {
-    if (colour.equals(Colour.WHITE)) {
-      return copy().moveDown();
-    } else {
-      return copy().moveUp();
-    }
+    return colour.equals(Colour.WHITE) ? down() : up();
   }
 
-  public boolean isOutOfBounds(Board board) {
-    // row and column are 0-indexed
-    return row < 0
-        || row >= board.getNoRows()
-        || column < 0
-        || column >= board.getNoCols();
+  // Any other offset (e.g. knight moves)
+  public Position offset(int rowOffset, int columnOffset) {
+    int newRow = row + rowOffset;
+    int newColumn = column + columnOffset;
+    return isOnBoard(newRow, newColumn) ? SQUARES[newRow * NO_COLS + newColumn] : null;
   }
+  // -------------------- End of neighbours --------------------
 
+  // There is only 1 instance per square, but keep equals so positions from anywhere compare as before
   @Override
   public boolean equals(Object o) {
-    if (o instanceof Position) {
-      return row == ((Position) o).row
-          && column == ((Position) o).column;
-    } else {
-      return false;
-    }
+    return this == o;
   }
 
-  public Position copy() {
-    return new Position(row, column);
+  @Override
+  public int hashCode() {
+    return square;
   }
 
   @Override
   public String toString() {
-    StringBuilder sb = new StringBuilder();
-    sb
-        .append((char) (column + LOWERCASE_CONSTANT))
-        .append(row + 1);
-
-    return sb.toString();
+    return name;
   }
 
   // Testing
   public static void main(String[] args) {
-    Position p = new Position(3, 6);
+    Position p = Position.of(3, 6);
     System.out.println(p);
+
+    // Test: interned, and the neighbour tables are right (null at the edges)
+    for (int square = 0; square < SQUARES.length; square++) {
+      Position position = ofSquare(square);
+      int row = position.getRow();
+      int column = position.getColumn();
+      if (position != of(row, column) || position.square() != square
+          || position.left() != (column > 0 ? of(row, column - 1) : null)
+          || position.right() != (column < NO_COLS - 1 ? of(row, column + 1) : null)
+          || position.up() != (row < NO_ROWS - 1 ? of(row + 1, column) : null)
+          || position.down() != (row > 0 ? of(row - 1, column) : null)) {
+        throw new IllegalStateException("Position tables wrong at " + position);
+      }
+    }
+    System.out.println("Position tables agree for all " + SQUARES.length + " squares");
   }
 }
@@ -28,26 +28,24 @@ public class Bishop extends DefaultPiece implements Piece {
     Position newPos;
 
     for (int i = 0; i < 4; i++) {
-      newPos = position.copy();
+      newPos = position;
 
       while (true) {
-        newPos = newPos.copy();
-
         if (i == 0) {
           // Left-up
-          newPos.moveLeft().moveUp();
+          newPos = newPos.offset(1, -1);
         } else if (i == 1) {
           // Right-up
-          newPos.moveRight().moveUp();
+          newPos = newPos.offset(1, 1);
         } else if (i == 2) {
           // Left-down
-          newPos.moveLeft().moveDown();
+          newPos = newPos.offset(-1, -1);
         } else {
           // Right-down
-          newPos.moveRight().moveDown();
+          newPos = newPos.offset(-1, 1);
         }
 
-        if (newPos.isOutOfBounds(board)) {
+        if (newPos == null) {
           break;
         }
 
@@ -73,7 +71,7 @@ public class Bishop extends DefaultPiece implements Piece {
 
   @Override
   public Piece copy() {
-    return new Bishop(colour, position.copy());
+    return new Bishop(colour, position);
   }
 
   @Override
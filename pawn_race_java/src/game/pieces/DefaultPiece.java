@@ -45,6 +45,11 @@ public class DefaultPiece implements Piece {
     numTimesMoved++;
   }
 
+  @Override
+  public void decrementNumTimesMoved() {
+    numTimesMoved--;
+  }
+
   @Override
   public void setPosition(Position position) {
     this.position = position;
@@ -59,8 +64,7 @@ public class DefaultPiece implements Piece {
           Player player = new Player(colour, boardCopy);
           // We need to make copy of move, so it points to the correct piece on the board copy
           Piece pieceCopy = boardCopy.getPieceAtPosition(move.getPiece().getPosition());
-          Position posTo = move.getPosTo().copy();
-          Move moveCopy = new Move(pieceCopy, posTo);
+          Move moveCopy = new Move(pieceCopy, move.getPosTo());
           player.makeMove(moveCopy, false);
 
           // Check if king is in check
@@ -84,7 +88,7 @@ public class DefaultPiece implements Piece {
 
   @Override
   public Piece copy() {
-    return new DefaultPiece(colour, position.copy());
+    return new DefaultPiece(colour, position);
   }
 
   @Override
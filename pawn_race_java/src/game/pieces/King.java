@@ -21,19 +21,23 @@ public class King extends DefaultPiece implements Piece {
     return PieceType.KING;
   }
 
+  // Returns null (without moving) if the move is off the board
   private Position makeMove(Piece piece, Board board, int moveId) {
     Player player = new Player(colour, board);
-    Position pos = piece.getPosition().copy();
-
-    switch (moveId) {
-      case 0 -> pos.moveLeft();
-      case 1 -> pos.moveLeft().moveUp();
-      case 2 -> pos.moveUp();
-      case 3 -> pos.moveRight().moveUp();
-      case 4 -> pos.moveRight();
-      case 5 -> pos.moveRight().moveDown();
-      case 6 -> pos.moveDown();
-      case 7 -> pos.moveLeft().moveDown();
+    Position from = piece.getPosition();
+
+    Position pos = switch (moveId) {
+      case 0 -> from.offset(0, -1);
+      case 1 -> from.offset(1, -1);
+      case 2 -> from.offset(1, 0);
+      case 3 -> from.offset(1, 1);
+      case 4 -> from.offset(0, 1);
+      case 5 -> from.offset(-1, 1);
+      case 6 -> from.offset(-1, 0);
+      default -> from.offset(-1, -1);
+    };
+    if (pos == null) {
+      return null;
     }
 
     Move move = new Move(piece, pos);
@@ -49,28 +53,29 @@ public class King extends DefaultPiece implements Piece {
       Board boardCopy = board.copy();
       King kingCopy = boardCopy.getKing(colour);
       Position newPos = makeMove(kingCopy, boardCopy, i);
+      if (newPos == null) {
+        continue;
+      }
 
       // King cannot be in check after move
-      // Move must not be out of bounds
+      // (moves off the board were skipped above)
       // We make use of lazy evaluation
       if (canMoveIntoCheck || !kingCopy.isInCheck(boardCopy)) {
-        if (!newPos.isOutOfBounds(board)) {
-          // The rest of the code is same as Knight
-          Move move = new Move(this, newPos);
+        // The rest of the code is same as Knight
+        Move move = new Move(this, newPos);
 
-          Optional<Piece> maybePiece = board.findPieceAtPosition(newPos);
+        Optional<Piece> maybePiece = board.findPieceAtPosition(newPos);
 
-          if (maybePiece.isPresent()) {
-            Piece piece = maybePiece.get();
+        if (maybePiece.isPresent()) {
+          Piece piece = maybePiece.get();
 
-            if (!piece.getColour().equals(getColour())) {
-              // Different colour means move is valid (capture)
-              moves.add(move);
-            }
-          } else {
-            // We didn't hit a piece, so move is valid
+          if (!piece.getColour().equals(getColour())) {
+            // Different colour means move is valid (capture)
             moves.add(move);
           }
+        } else {
+          // We didn't hit a piece, so move is valid
+          moves.add(move);
         }
       }
     }
@@ -117,7 +122,7 @@ public class King extends DefaultPiece implements Piece {
 
   @Override
   public Piece copy() {
-    return new King(colour, position.copy());
+    return new King(colour, position);
   }
 
   @Override
@@ -20,17 +20,18 @@ public class Knight extends DefaultPiece implements Piece {
     return PieceType.KNIGHT;
   }
 
-  private void moveKnight(Position pos, int moveId) {
-    switch (moveId) {
-      case 0 -> pos.moveLeft().moveLeft().moveUp();
-      case 1 -> pos.moveLeft().moveUp().moveUp();
-      case 2 -> pos.moveRight().moveUp().moveUp();
-      case 3 -> pos.moveRight().moveRight().moveUp();
-      case 4 -> pos.moveRight().moveRight().moveDown();
-      case 5 -> pos.moveRight().moveDown().moveDown();
-      case 6 -> pos.moveLeft().moveDown().moveDown();
-      case 7 -> pos.moveLeft().moveLeft().moveDown();
-    }
+  // null if off the board
+  private Position moveKnight(Position pos, int moveId) {
+    return switch (moveId) {
+      case 0 -> pos.offset(1, -2);
+      case 1 -> pos.offset(2, -1);
+      case 2 -> pos.offset(2, 1);
+      case 3 -> pos.offset(1, 2);
+      case 4 -> pos.offset(-1, 2);
+      case 5 -> pos.offset(-2, 1);
+      case 6 -> pos.offset(-2, -1);
+      default -> pos.offset(-1, -2);
+    };
   }
 
   @Override
@@ -39,10 +40,9 @@ public class Knight extends DefaultPiece implements Piece {
 
     // There are 8 moves for a knight in total.
     for (int i = 0; i < 8; i++) {
-      Position newPos = position.copy();
-      moveKnight(newPos, i);
+      Position newPos = moveKnight(position, i);
 
-      if (!newPos.isOutOfBounds(board)) {
+      if (newPos != null) {
         // Move isn't out of bounds, so we continue to check its validity
         Move move = new Move(this, newPos);
 
@@ -67,7 +67,7 @@ public class Knight extends DefaultPiece implements Piece {
 
   @Override
   public Piece copy() {
-    return new Knight(colour, position.copy());
+    return new Knight(colour, position);
   }
 
   @Override
@@ -8,7 +8,6 @@ import game.misc.Position;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 public class Pawn extends DefaultPiece implements Piece {
 
@@ -24,12 +23,11 @@ public class Pawn extends DefaultPiece implements Piece {
   private boolean checkMoveValidityAndAdd
       (Board board, ArrayList<Move> movesList, Position pos, boolean needCapture) {
 
-    Optional<Piece> maybePiece = board.findPieceAtPosition(pos);
+    // Straight from the board's mailbox (no Optional, this is called for every pawn move)
+    Piece piece = board.getPieceAt(pos.square());
 
     if (needCapture) {
-      if (maybePiece.isPresent()) {
-        Piece piece = maybePiece.get();
-
+      if (piece != null) {
         if (!piece.getColour().equals(getColour())) {
           Move move = new Move(this, pos, MoveType.CAPTURE);
           movesList.add(move);
@@ -37,7 +35,7 @@ public class Pawn extends DefaultPiece implements Piece {
         }
       }
     } else {
-      if (maybePiece.isEmpty()) {
+      if (piece == null) {
         Move move = new Move(this, pos, MoveType.PASSIVE);
         movesList.add(move);
         return true;
@@ -63,10 +61,10 @@ public class Pawn extends DefaultPiece implements Piece {
     Position newPos;
 
     // Move forward 1 square
-    newPos = position.copy();
-    newPos.moveForward(colour);
-    assert !newPos.isOutOfBounds(board);
-    boolean canMoveOneSquare = checkMoveValidityAndAdd(board, moves, newPos, false);
+    // (a pawn on its last row has won, so there is always a square in front)
+    Position forward = position.forward(colour);
+    assert forward != null;
+    boolean canMoveOneSquare = checkMoveValidityAndAdd(board, moves, forward, false);
 
     // Move forward 2 squares
     int initialRowOffset = 1;
@@ -75,25 +73,19 @@ public class Pawn extends DefaultPiece implements Piece {
       if ((position.getRow() == initialRowOffset && colour.equals(Colour.WHITE))
           || (position.getRow() == (board.getNoRows() - 1) - initialRowOffset
           && colour.equals(Colour.BLACK))) {
-        newPos = position.copy();
-        newPos.moveForward(colour).moveForward(colour);
-        assert !newPos.isOutOfBounds(board);
-
-        checkMoveValidityAndAdd(board, moves, newPos, false);
+        checkMoveValidityAndAdd(board, moves, forward.forward(colour), false);
       }
     }
 
     // Capture pieces (left)
-    newPos = position.copy();
-    newPos.moveLeft().moveForward(colour);
-    if (!newPos.isOutOfBounds(board)) {
+    newPos = forward.left();
+    if (newPos != null) {
       checkMoveValidityAndAdd(board, moves, newPos, true);
     }
 
     // Capture pieces (right)
-    newPos = position.copy();
-    newPos.moveRight().moveForward(colour);
-    if (!newPos.isOutOfBounds(board)) {
+    newPos = forward.right();
+    if (newPos != null) {
       checkMoveValidityAndAdd(board, moves, newPos, true);
     }
 
@@ -102,21 +94,17 @@ public class Pawn extends DefaultPiece implements Piece {
     if ((position.getRow() == enPassantRow && colour.equals(Colour.WHITE))
         || (position.getRow() == (board.getNoCols() - 1) - enPassantRow && colour.equals(Colour.BLACK))) {
       // En Passant left
-      newPos = position.copy();
-      newPos.moveLeft();
+      newPos = position.left();
 
-      if (canEnPassant(board, newPos)) {
-        newPos.moveForward(colour);
-        moves.add(new Move(this, newPos, MoveType.EN_PASSANT));
+      if (newPos != null && canEnPassant(board, newPos)) {
+        moves.add(new Move(this, newPos.forward(colour), MoveType.EN_PASSANT));
       }
 
       // En Passant right
-      newPos = position.copy();
-      newPos.moveRight();
+      newPos = position.right();
 
-      if (canEnPassant(board, newPos)) {
-        newPos.moveForward(colour);
-        moves.add(new Move(this, newPos, MoveType.EN_PASSANT));
+      if (newPos != null && canEnPassant(board, newPos)) {
+        moves.add(new Move(this, newPos.forward(colour), MoveType.EN_PASSANT));
       }
     }
 
@@ -131,7 +119,10 @@ public class Pawn extends DefaultPiece implements Piece {
 
   @Override
   public Piece copy() {
-    return new Pawn(colour, position.copy());
+    // En passant depends on how many times a pawn has moved, so this has to be copied too
+    Pawn pawn = new Pawn(colour, position);
+    pawn.numTimesMoved = numTimesMoved;
+    return pawn;
   }
 
   @Override
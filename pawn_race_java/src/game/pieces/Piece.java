@@ -13,6 +13,7 @@ public interface Piece {
   Position getPosition();
   int getNumTimesMoved();
   void incrementNumTimesMoved();
+  void decrementNumTimesMoved();
   void setPosition(Position position);
   List<Move> getValidMoves(Board board);
   List<Move> getFilteredValidMoves(Board board);
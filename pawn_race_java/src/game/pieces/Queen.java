@@ -38,7 +38,7 @@ public class Queen extends DefaultPiece implements Piece {
 
   @Override
   public Piece copy() {
-    return new Queen(colour, position.copy());
+    return new Queen(colour, position);
   }
 
   @Override
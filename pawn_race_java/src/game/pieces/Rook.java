@@ -28,25 +28,25 @@ public class Rook extends DefaultPiece implements Piece {
 
     // 4 iterations – once for each direction (left, right, up, down)
     for (int i = 0; i < 4; i++) {
-      newPos = position.copy();
+      newPos = position;
 
       while (true) {
         // We can move first, since we don't have to validate our starting position
         // In fact, if we don't move first, it gets messed up
         // since the board detects our current piece at the start position
-        newPos = newPos.copy();
-
+        // (positions are immutable, so this gives the next square rather than changing this one)
         if (i == 0) {
-          newPos.moveLeft();
+          newPos = newPos.left();
         } else if (i == 1) {
-          newPos.moveRight();
+          newPos = newPos.right();
         } else if (i == 2) {
-          newPos.moveUp();
+          newPos = newPos.up();
         } else {
-          newPos.moveDown();
+          newPos = newPos.down();
         }
 
-        if (newPos.isOutOfBounds(board)) {
+        // Off the board
+        if (newPos == null) {
           break;
         }
 
@@ -75,7 +75,7 @@ public class Rook extends DefaultPiece implements Piece {
 
   @Override
   public Piece copy() {
-    return new Rook(colour, position.copy());
+    return new Rook(colour, position);
   }
 
   @Override
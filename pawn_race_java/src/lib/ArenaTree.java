@@ -0,0 +1,444 @@
+package lib;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Tree stored in parallel primitive arrays (an arena), for search trees
+ *
+ * A node is an int index, with columns for its parent, first child, next sibling,
+ * a packed move, a score, a count, flags and a 64-bit key. So a node costs no objects,
+ * and building or walking the tree allocates nothing (once the arena is big enough).
+ * What the move, score, count, flags and key mean is up to the user.
+ *
+ * The arena grows in chunks (existing nodes are never copied), and clear() is O(1),
+ * so the same arena can be reused from one search to the next.
+ * retainSubtree keeps only the subtree under a node (e.g. the move played), packing it
+ * at the start of the arena so the space of everything else can be used again.
+ *
+ * Not thread-safe.
+ */
+public class ArenaTree implements Tree<Integer> {
+  public static final int NONE = -1;
+
+  private static final int CHUNK_SHIFT = 12;
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private Columns columns = new Columns();
+  // Where retainSubtree copies the subtree to (then the 2 are swapped)
+  private Columns spareColumns = new Columns();
+  private int size = 0;
+
+  // Chunks of every column
+  private static class Columns {
+    private int[][] parents = new int[0][];
+    private int[][] firstChildren = new int[0][];
+    private int[][] lastChildren = new int[0][];
+    private int[][] nextSiblings = new int[0][];
+    private int[][] moves = new int[0][];
+    private int[][] scores = new int[0][];
+    private int[][] counts = new int[0][];
+    private int[][] flags = new int[0][];
+    private long[][] keys = new long[0][];
+    // Scratch column for retainSubtree (index of the node it was copied from)
+    private int[][] origins = new int[0][];
+    private int noChunks = 0;
+
+    private void addChunk() {
+      if (noChunks == parents.length) {
+        int newLength = Math.max(4, 2 * parents.length);
+        parents = grow(parents, newLength);
+        firstChildren = grow(firstChildren, newLength);
+        lastChildren = grow(lastChildren, newLength);
+        nextSiblings = grow(nextSiblings, newLength);
+        moves = grow(moves, newLength);
+        scores = grow(scores, newLength);
+        counts = grow(counts, newLength);
+        flags = grow(flags, newLength);
+        origins = grow(origins, newLength);
+        long[][] newKeys = new long[newLength][];
+        System.arraycopy(keys, 0, newKeys, 0, noChunks);
+        keys = newKeys;
+      }
+
+      parents[noChunks] = new int[CHUNK_SIZE];
+      firstChildren[noChunks] = new int[CHUNK_SIZE];
+      lastChildren[noChunks] = new int[CHUNK_SIZE];
+      nextSiblings[noChunks] = new int[CHUNK_SIZE];
+      moves[noChunks] = new int[CHUNK_SIZE];
+      scores[noChunks] = new int[CHUNK_SIZE];
+      counts[noChunks] = new int[CHUNK_SIZE];
+      flags[noChunks] = new int[CHUNK_SIZE];
+      origins[noChunks] = new int[CHUNK_SIZE];
+      keys[noChunks] = new long[CHUNK_SIZE];
+      noChunks++;
+    }
+
+    // Only the table of chunks is copied, not the chunks
+    private static int[][] grow(int[][] chunks, int newLength) {
+      int[][] newChunks = new int[newLength][];
+      System.arraycopy(chunks, 0, newChunks, 0, chunks.length);
+      return newChunks;
+    }
+
+    private int getCapacity() {
+      return noChunks * CHUNK_SIZE;
+    }
+
+    // Adds node @node (the next free index), with no children and every value 0
+    private void initNode(int node, int parent) {
+      if (node == getCapacity()) {
+        addChunk();
+      }
+
+      int chunk = node >>> CHUNK_SHIFT;
+      int offset = node & CHUNK_MASK;
+      parents[chunk][offset] = parent;
+      firstChildren[chunk][offset] = NONE;
+      lastChildren[chunk][offset] = NONE;
+      nextSiblings[chunk][offset] = NONE;
+      moves[chunk][offset] = 0;
+      scores[chunk][offset] = 0;
+      counts[chunk][offset] = 0;
+      flags[chunk][offset] = 0;
+      keys[chunk][offset] = 0;
+
+      if (parent != NONE) {
+        int parentChunk = parent >>> CHUNK_SHIFT;
+        int parentOffset = parent & CHUNK_MASK;
+        int lastChild = lastChildren[parentChunk][parentOffset];
+
+        if (lastChild == NONE) {
+          firstChildren[parentChunk][parentOffset] = node;
+        } else {
+          nextSiblings[lastChild >>> CHUNK_SHIFT][lastChild & CHUNK_MASK] = node;
+        }
+        lastChildren[parentChunk][parentOffset] = node;
+      }
+    }
+  }
+
+  public ArenaTree() {}
+
+  // Allocates room for @capacity nodes up front
+  public ArenaTree(int capacity) {
+    while (columns.getCapacity() < capacity) {
+      columns.addChunk();
+    }
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  // Removes every node (the arena is kept)
+  public void clear() {
+    size = 0;
+  }
+
+  // Clears the tree and adds a root (always node 0)
+  public int setRoot() {
+    clear();
+    columns.initNode(0, NONE);
+    size = 1;
+    return 0;
+  }
+
+  public int getRootIndex() {
+    return isEmpty() ? NONE : 0;
+  }
+
+  // Adds a node as the last child of @parent
+  public int addChild(int parent) {
+    assert parent >= 0 && parent < size;
+    int node = size;
+    columns.initNode(node, parent);
+    size++;
+    return node;
+  }
+
+  public boolean contains(int node) {
+    return node >= 0 && node < size;
+  }
+
+  // The Tree methods box node indices, searches should use the int methods
+  // (getRootIndex, contains and the columns) instead
+  @Override
+  public Optional<Integer> getRoot() {
+    return isEmpty() ? Optional.empty() : Optional.of(0);
+  }
+
+  // Nodes are their own value, so this only checks @node is in the tree
+  @Override
+  public Optional<Integer> getNode(Integer node) {
+    return contains(node) ? Optional.of(node) : Optional.empty();
+  }
+
+  @Override
+  public int getSize() {
+    return size;
+  }
+
+  // Nodes the arena can hold before it grows
+  public int getCapacity() {
+    return columns.getCapacity();
+  }
+
+  // -------------------- Columns --------------------
+  public int getParent(int node) {
+    return columns.parents[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+  }
+
+  public int getFirstChild(int node) {
+    return columns.firstChildren[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+  }
+
+  public int getNextSibling(int node) {
+    return columns.nextSiblings[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+  }
+
+  public boolean isLeaf(int node) {
+    return getFirstChild(node) == NONE;
+  }
+
+  public int getNoChildren(int node) {
+    int noChildren = 0;
+    for (int child = getFirstChild(node); child != NONE; child = getNextSibling(child)) {
+      noChildren++;
+    }
+    return noChildren;
+  }
+
+  public int getMove(int node) {
+    return columns.moves[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+  }
+
+  public void setMove(int node, int move) {
+    columns.moves[node >>> CHUNK_SHIFT][node & CHUNK_MASK] = move;
+  }
+
+  public int getScore(int node) {
+    return columns.scores[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+  }
+
+  public void setScore(int node, int score) {
+    columns.scores[node >>> CHUNK_SHIFT][node & CHUNK_MASK] = score;
+  }
+
+  public void addScore(int node, int score) {
+    columns.scores[node >>> CHUNK_SHIFT][node & CHUNK_MASK] += score;
+  }
+
+  public int getCount(int node) {
+    return columns.counts[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+  }
+
+  public void setCount(int node, int count) {
+    columns.counts[node >>> CHUNK_SHIFT][node & CHUNK_MASK] = count;
+  }
+
+  public void addCount(int node, int count) {
+    columns.counts[node >>> CHUNK_SHIFT][node & CHUNK_MASK] += count;
+  }
+
+  public int getFlags(int node) {
+    return columns.flags[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+  }
+
+  public void setFlags(int node, int flags) {
+    columns.flags[node >>> CHUNK_SHIFT][node & CHUNK_MASK] = flags;
+  }
+
+  public long getKey(int node) {
+    return columns.keys[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+  }
+
+  public void setKey(int node, long key) {
+    columns.keys[node >>> CHUNK_SHIFT][node & CHUNK_MASK] = key;
+  }
+  // -------------------- End of columns --------------------
+
+  /**
+   * Makes @node the root, dropping every node not under it
+   * The subtree is copied breadth first to the start of the other arena (then the 2 are swapped),
+   * so node indices change: returns the new index of @node (always 0).
+   * Children keep their order.
+   */
+  public int retainSubtree(int node) {
+    assert node >= 0 && node < size;
+    Columns from = columns;
+    Columns to = spareColumns;
+
+    copyNode(from, node, to, 0, NONE);
+    int newSize = 1;
+
+    // Nodes are copied in the order they are visited, so the copies are the queue
+    for (int i = 0; i < newSize; i++) {
+      int origin = to.origins[i >>> CHUNK_SHIFT][i & CHUNK_MASK];
+
+      for (int child = getFirstChild(origin); child != NONE; child = getNextSibling(child)) {
+        copyNode(from, child, to, newSize, i);
+        newSize++;
+      }
+    }
+
+    columns = to;
+    spareColumns = from;
+    size = newSize;
+    return 0;
+  }
+
+  private static void copyNode(Columns from, int node, Columns to, int newNode, int newParent) {
+    to.initNode(newNode, newParent);
+
+    int chunk = node >>> CHUNK_SHIFT;
+    int offset = node & CHUNK_MASK;
+    int newChunk = newNode >>> CHUNK_SHIFT;
+    int newOffset = newNode & CHUNK_MASK;
+    to.moves[newChunk][newOffset] = from.moves[chunk][offset];
+    to.scores[newChunk][newOffset] = from.scores[chunk][offset];
+    to.counts[newChunk][newOffset] = from.counts[chunk][offset];
+    to.flags[newChunk][newOffset] = from.flags[chunk][offset];
+    to.keys[newChunk][newOffset] = from.keys[chunk][offset];
+    to.origins[newChunk][newOffset] = node;
+  }
+
+  private void appendNode(StringBuilder sb, int node, int depth) {
+    sb.append("  ".repeat(depth))
+        .append(String.format("Node %d: move %d, score %d, count %d, flags %d%n",
+            node, getMove(node), getScore(node), getCount(node), getFlags(node)));
+
+    for (int child = getFirstChild(node); child != NONE; child = getNextSibling(child)) {
+      appendNode(sb, child, depth + 1);
+    }
+  }
+
+  @Override
+  public String toString() {
+    if (isEmpty()) {
+      return "Empty tree";
+    }
+
+    StringBuilder sb = new StringBuilder();
+    appendNode(sb, 0, 0);
+    return sb.toString();
+  }
+
+  // Testing
+  public static void main(String[] args) {
+    // Test: build and print the same tree as NodeTree's test (values as scores)
+    ArenaTree tree = new ArenaTree();
+    int root = tree.setRoot();
+    tree.setScore(root, 3);
+    // 1st layer
+    tree.setScore(tree.addChild(root), 1);
+    int secondChild = tree.addChild(root);
+    tree.setScore(secondChild, 2);
+    tree.setScore(tree.addChild(root), 3);
+    tree.setScore(tree.addChild(root), 8);
+    // 2nd layer
+    tree.setScore(tree.addChild(secondChild), -5);
+    tree.setScore(tree.addChild(secondChild), -7);
+    tree.setScore(tree.addChild(secondChild), -4);
+
+    System.out.print(tree);
+    System.out.println("Size of tree (expected 8): " + tree.getSize());
+
+    // Test: retain the subtree of the second child
+    tree.retainSubtree(secondChild);
+    System.out.print(tree);
+    System.out.println("Size of tree after retaining a subtree (expected 4): " + tree.getSize());
+
+    // Test: a big random tree, then keep a subtree, checked against a NodeTree built the same way
+    Random random = new Random(0);
+    NodeTree<Integer> nodeTree = new NodeTree<>();
+    List<NodeTree.Node<Integer>> nodes = new ArrayList<>();
+    nodes.add(nodeTree.setRootNode(0));
+    tree.setRoot();
+
+    for (int i = 1; i < 100_000; i++) {
+      int parent = random.nextInt(i);
+      int node = tree.addChild(parent);
+      tree.setScore(node, i);
+      tree.setKey(node, (long) i * i);
+      nodes.add(nodeTree.addNode(i, nodes.get(parent)));
+    }
+
+    int kept = tree.getFirstChild(tree.getFirstChild(0));
+    NodeTree.Node<Integer> keptNode = nodes.get(0).getChild(0).getChild(0);
+    tree.retainSubtree(kept);
+    nodeTree.reRoot(keptNode);
+
+    if (tree.getSize() != nodeTree.getSize() || !sameTree(tree, 0, keptNode)) {
+      throw new IllegalStateException("Retained subtree differs from NodeTree.reRoot");
+    }
+
+    // Test: clearing keeps the arena, so building the tree again doesn't grow it
+    int capacity = 0;
+    for (int j = 0; j < 2; j++) {
+      tree.setRoot();
+      for (int i = 1; i < 100_000; i++) {
+        tree.addChild(random.nextInt(i));
+      }
+      capacity = (j == 0) ? tree.getCapacity() : capacity;
+    }
+    if (tree.getCapacity() != capacity) {
+      throw new IllegalStateException("Arena grew after clear()");
+    }
+    System.out.println("Random tree of 100000 nodes matches NodeTree after keeping a subtree of "
+        + nodeTree.getSize() + " nodes, capacity " + capacity);
+
+    // Test: once the arena is big enough, building and walking the tree allocates nothing
+    // (100000 boxed node indices would be ~1.6MB)
+    ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+    long checksum = buildAndWalk(tree, random);
+    long allocated = threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+    if (allocated > 1024) {
+      throw new IllegalStateException("Building and walking the tree allocated " + allocated + " bytes");
+    }
+    System.out.println("Built and walked 100000 nodes with " + allocated + " bytes allocated (checksum "
+        + checksum + ")");
+  }
+
+  // Same calls AIMcts makes: add children, set and add to columns, walk children
+  private static long buildAndWalk(ArenaTree tree, Random random) {
+    int root = tree.setRoot();
+    for (int i = 1; i < 100_000; i++) {
+      int node = tree.addChild(random.nextInt(i));
+      tree.setMove(node, i);
+      tree.setKey(node, i);
+      tree.addCount(node, 1);
+      tree.addScore(node, i % 3);
+    }
+
+    long checksum = 0;
+    for (int node = tree.getRootIndex(); tree.contains(node); node++) {
+      for (int child = tree.getFirstChild(node); child != NONE; child = tree.getNextSibling(child)) {
+        checksum += tree.getScore(child) * tree.getCount(child) + tree.getMove(child) + tree.getFlags(child);
+      }
+    }
+    return checksum + root;
+  }
+
+  private static boolean sameTree(ArenaTree tree, int node, NodeTree.Node<Integer> other) {
+    if (tree.getScore(node) != other.value || tree.getKey(node) != (long) other.value * other.value
+        || tree.getNoChildren(node) != other.getChildren().size()) {
+      return false;
+    }
+
+    int i = 0;
+    for (int child = tree.getFirstChild(node); child != NONE; child = tree.getNextSibling(child)) {
+      if (!sameTree(tree, child, other.getChild(i++))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
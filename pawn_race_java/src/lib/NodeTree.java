@@ -46,6 +46,21 @@ public class NodeTree<V> implements Tree<V> {
     return root;
   }
 
+  // Makes @node (a node of this tree) the root, dropping everything not under it
+  // (e.g. to keep the subtree of the move played)
+  public void reRoot(Node<V> node) {
+    root = node;
+    size = countNodes(node);
+  }
+
+  private int countNodes(Node<V> curr) {
+    int noNodes = 1;
+    for (Node<V> child : curr.children) {
+      noNodes += countNodes(child);
+    }
+    return noNodes;
+  }
+
   // Does not check if @value is already present in tree
   // Does not check if @parent is part of the tree
   // (this is for efficiency purposes, e.g. minimax)
@@ -146,5 +161,9 @@ public class NodeTree<V> implements Tree<V> {
 
     // Test: size of tree
     System.out.println("Size of tree (expected 8): " + tree.getSize());
+
+    // Test: re-root at the second child
+    tree.reRoot(secondChild);
+    System.out.println("Size of tree after re-rooting (expected 4): " + tree.getSize());
   }
 }